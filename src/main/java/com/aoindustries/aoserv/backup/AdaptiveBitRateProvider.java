@@ -0,0 +1,169 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.hodgepodge.io.BitRateProvider;
+import java.util.Arrays;
+
+/**
+ * Adjusts the bit rate to the queuing delay of the link, in the manner of LEDBAT (RFC 6817), so that a
+ * replication uses the spare capacity of the link without adding much delay for other traffic.
+ *
+ * <p>The delay is sampled once per batch, from the flush of the batch to the first byte of its results.  Data
+ * still queued ahead of the batch, in the socket and along the path, adds to this delay.  The base delay is the
+ * minimum of the last {@link #BASE_HISTORY} minutes, and the queuing delay is the minimum of the last
+ * {@link #CURRENT_FILTER} samples less the base delay.</p>
+ *
+ * <p>Below {@link #TARGET} of queuing delay, the rate increases in proportion to the distance from the target,
+ * but only while the stream was held back by the rate since the previous sample.  Above the target, the rate
+ * decreases in proportion, by at most half per sample.  The rate of the wrapped provider is always the
+ * ceiling.</p>
+ *
+ * <p>The time spent by the daemon on each batch is part of every sample.  The minimum filters hide most of its
+ * variation, but a batch that is slow for the daemon is seen as queuing.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class AdaptiveBitRateProvider implements BitRateProvider {
+
+  /**
+   * The queuing delay targeted, in nanoseconds.
+   */
+  static final long TARGET = 100L * 1000 * 1000;
+
+  /**
+   * The number of one-minute minimums kept for the base delay.
+   */
+  static final int BASE_HISTORY = 10;
+
+  /**
+   * The number of recent samples of which the minimum is the current delay.
+   */
+  static final int CURRENT_FILTER = 4;
+
+  /**
+   * The fraction the rate increases by per sample with no queuing delay.
+   */
+  private static final double GAIN = 0.25;
+
+  /**
+   * The rate starts here, or at the ceiling when lower.
+   */
+  private static final long INITIAL_BIT_RATE = 10L * 1000 * 1000;
+
+  /**
+   * The rate does not decrease below this, or the ceiling when lower.
+   */
+  private static final long MIN_BIT_RATE = 100L * 1000;
+
+  /**
+   * The time held back by the rate that shows the rate, and not the source or the link, is limiting the stream.
+   */
+  private static final long LIMITED_THRESHOLD = 1000L * 1000;
+
+  private static final long MINUTE = 60L * 1000 * 1000 * 1000;
+
+  private final BitRateProvider ceiling;
+
+  private final long[] baseHistory = new long[BASE_HISTORY];
+  private int baseIndex;
+  private long baseMinuteStart;
+  private final long[] currentHistory = new long[CURRENT_FILTER];
+  private int currentIndex;
+  private int samples;
+
+  private double bitRate = INITIAL_BIT_RATE;
+
+  AdaptiveBitRateProvider(BitRateProvider ceiling) {
+    this.ceiling = ceiling;
+    Arrays.fill(baseHistory, Long.MAX_VALUE);
+    Arrays.fill(currentHistory, Long.MAX_VALUE);
+  }
+
+  /**
+   * Adds a sample of the delay.
+   *
+   * @param  delayNanos      the time from sending a request to receiving the first byte of its response
+   * @param  throttledNanos  the time writes were held back by the rate since the previous sample
+   */
+  synchronized void addSample(long delayNanos, long throttledNanos) {
+    long now = System.nanoTime();
+    if (samples == 0) {
+      baseMinuteStart = now;
+    } else if ((now - baseMinuteStart) >= MINUTE) {
+      // Start a new minute, forgetting the oldest
+      long minutes = (now - baseMinuteStart) / MINUTE;
+      for (long i = 0; i < Math.min(minutes, BASE_HISTORY); i++) {
+        baseIndex = (baseIndex + 1) % BASE_HISTORY;
+        baseHistory[baseIndex] = Long.MAX_VALUE;
+      }
+      baseMinuteStart += minutes * MINUTE;
+    }
+    baseHistory[baseIndex] = Math.min(baseHistory[baseIndex], delayNanos);
+    currentHistory[currentIndex] = delayNanos;
+    currentIndex = (currentIndex + 1) % CURRENT_FILTER;
+    samples++;
+
+    long queuingDelay = min(currentHistory) - min(baseHistory);
+    double offTarget = (double) (TARGET - queuingDelay) / TARGET;
+    if (offTarget < 0) {
+      bitRate *= 1 + Math.max(-1, offTarget) / 2;
+    } else if (throttledNanos >= LIMITED_THRESHOLD) {
+      bitRate *= 1 + GAIN * offTarget;
+    }
+    Long ceilingBitRate = ceiling.getBitRate();
+    if (ceilingBitRate != null && bitRate > ceilingBitRate) {
+      bitRate = ceilingBitRate;
+    }
+    if (bitRate < MIN_BIT_RATE) {
+      bitRate = MIN_BIT_RATE;
+    }
+  }
+
+  private static long min(long[] values) {
+    long min = Long.MAX_VALUE;
+    for (long value : values) {
+      min = Math.min(min, value);
+    }
+    return min;
+  }
+
+  /**
+   * Gets the adjusted rate, which is never more than the rate of the wrapped provider.
+   */
+  @Override
+  public Long getBitRate() {
+    Long ceilingBitRate = ceiling.getBitRate();
+    long adjusted;
+    synchronized (this) {
+      adjusted = Math.round(bitRate);
+    }
+    return ceilingBitRate == null ? adjusted : Math.min(adjusted, ceilingBitRate);
+  }
+
+  @Override
+  public int getBlockSize() {
+    return ceiling.getBlockSize();
+  }
+}
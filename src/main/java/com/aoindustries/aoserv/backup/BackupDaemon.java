@@ -31,10 +31,10 @@ import com.aoapps.hodgepodge.io.ByteCountOutputStream;
 import com.aoapps.hodgepodge.io.TerminalWriter;
 import com.aoapps.hodgepodge.io.stream.StreamableInput;
 import com.aoapps.hodgepodge.io.stream.StreamableOutput;
-import com.aoapps.hodgepodge.md5.MD5;
 import com.aoapps.hodgepodge.table.Table;
 import com.aoapps.hodgepodge.table.TableListener;
 import com.aoapps.io.posix.PosixFile;
+import com.aoapps.io.posix.Stat;
 import com.aoapps.lang.math.SafeMath;
 import com.aoapps.lang.util.ErrorPrinter;
 import com.aoapps.net.InetAddress;
@@ -58,16 +58,24 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -79,6 +87,10 @@ public final class BackupDaemon {
 
   private final BackupEnvironment environment;
 
+  private final BackupMetrics metrics;
+
+  private final PassLogOutbox outbox;
+
   private boolean isStarted;
   private final Map<FileReplication, BackupDaemonThread> threads = new HashMap<>();
 
@@ -87,6 +99,8 @@ public final class BackupDaemon {
    */
   public BackupDaemon(BackupEnvironment environment) {
     this.environment = environment;
+    this.metrics = new BackupMetrics(environment.getLogger());
+    this.outbox = new PassLogOutbox(environment);
   }
 
   private final TableListener tableListener = new TableListener() {
@@ -110,6 +124,7 @@ public final class BackupDaemon {
   @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "SleepWhileInLoop", "SleepWhileHoldingLock"})
   public synchronized void start() throws IOException, SQLException {
     if (!isStarted) {
+      outbox.start();
       AoservConnector conn = environment.getConnector();
       conn.getBackup().getFileReplication().addTableListener(tableListener);
       isStarted = true;
@@ -121,7 +136,8 @@ public final class BackupDaemon {
           } catch (Throwable t) {
             environment.getLogger().logp(Level.SEVERE, getClass().getName(), "run", null, t);
             try {
-              Thread.sleep(60000);
+              // Randomized so daemons restarted together do not retry the master together (30-90 seconds)
+              Thread.sleep(30L * 1000 + environment.getFastRandom().nextInt(60 * 1000));
             } catch (InterruptedException err2) {
               environment.getLogger().logp(Level.WARNING, getClass().getName(), "run", null, err2);
               // Restore the interrupted status
@@ -147,7 +163,7 @@ public final class BackupDaemon {
           if (isDebug) {
             logger.logp(Level.FINE, getClass().getName(), "verifyThreads", "Starting BackupDaemonThread for " + ffr);
           }
-          BackupDaemonThread thread = new BackupDaemonThread(environment, ffr);
+          BackupDaemonThread thread = new BackupDaemonThread(environment, ffr, metrics, outbox);
           threads.put(ffr, thread);
           thread.start();
         }
@@ -165,6 +181,7 @@ public final class BackupDaemon {
           logger.logp(Level.FINE, getClass().getName(), "verifyThreads", "Joining BackupDaemonThread for " + ffr);
         }
         thread.join();
+        metrics.unregister(ffr.getPkey());
       }
     }
   }
@@ -200,6 +217,14 @@ public final class BackupDaemon {
         Thread.currentThread().interrupt();
       }
       threads.clear();
+      metrics.unregisterAll();
+      try {
+        outbox.stop();
+      } catch (InterruptedException err) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "stop", null, err);
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+      }
     }
   }
 
@@ -215,19 +240,73 @@ public final class BackupDaemon {
     }
   }
 
+  /**
+   * Gets the progress of the pass currently running for the given replication.
+   *
+   * @return  the progress or {@code null} when no pass is running
+   */
+  public BackupProgress getProgress(FileReplication ffr) {
+    // Not synchronized on this daemon, which is held while waiting for threads to stop
+    return metrics.getProgress(ffr.getPkey());
+  }
+
+  /**
+   * Writes the metrics of all replications in the Prometheus text exposition format.
+   * The same metrics are also available over JMX.
+   *
+   * @see  ReplicationMetricsMXBean
+   */
+  public void writePrometheusMetrics(Appendable out) throws IOException {
+    metrics.writePrometheus(out);
+  }
+
+  /**
+   * Gets the bit rate of the replication from the master, applying the {@link BitRateProfile} of the environment.
+   * The rate is evaluated at most once per {@link #EVALUATE_INTERVAL} and reused for the writes in between.
+   */
   private static class DynamicBitRateProvider implements BitRateProvider {
 
+    private static final long EVALUATE_INTERVAL = 1000L * 1000 * 1000;
+
     private final BackupEnvironment environment;
     private final FileReplication originalFfr;
 
+    private boolean evaluated;
+    private long lastEvaluated;
+    private Long lastBitRate;
+
     private DynamicBitRateProvider(BackupEnvironment environment, FileReplication ffr) {
       this.environment = environment;
       this.originalFfr = ffr;
     }
 
     @Override
-    @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
     public Long getBitRate() {
+      long now = System.nanoTime();
+      if (!evaluated || (now - lastEvaluated) >= EVALUATE_INTERVAL) {
+        lastBitRate = evaluateBitRate();
+        lastEvaluated = now;
+        evaluated = true;
+      }
+      return lastBitRate;
+    }
+
+    @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+    private Long evaluateBitRate() {
+      Long bitRate = getReplicationBitRate();
+      try {
+        BitRateProfile profile = environment.getBitRateProfile(originalFfr);
+        if (profile != null) {
+          bitRate = profile.getBitRate(System.currentTimeMillis(), bitRate);
+        }
+      } catch (Throwable t) {
+        environment.getLogger().logp(Level.SEVERE, DynamicBitRateProvider.class.getName(), "evaluateBitRate", null, t);
+      }
+      return bitRate;
+    }
+
+    @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+    private Long getReplicationBitRate() {
       try {
         // Try to get the latest version of originalFfr
         FileReplication newFfr = originalFfr.getTable().getConnector().getBackup().getFileReplication().get(originalFfr.getPkey());
@@ -235,7 +314,7 @@ public final class BackupDaemon {
           return newFfr.getBitRate();
         }
       } catch (Throwable t) {
-        environment.getLogger().logp(Level.SEVERE, DynamicBitRateProvider.class.getName(), "getBitRate", null, t);
+        environment.getLogger().logp(Level.SEVERE, DynamicBitRateProvider.class.getName(), "getReplicationBitRate", null, t);
       }
       return originalFfr.getBitRate();
     }
@@ -264,34 +343,80 @@ public final class BackupDaemon {
      *
      * @return the number of files in the array, zero (0) indicates iteration has completed
      */
-    private static int getNextFilenames(Set<String> remainingRequiredFilenames, Iterator<String> filenameIterator, String[] filenames, int batchSize) {
+    private static int getNextFilenames(RequiredFilenames remainingRequiredFilenames, Iterator<String> filenameIterator, String[] filenames, int batchSize, PassMetrics pass) {
+      final boolean listingEvents = BackupEvents.DirectoryListingEvent.TYPE.isEnabled();
       int c = 0;
       while (c < batchSize) {
+        BackupEvents.DirectoryListingEvent listingEvent;
+        if (listingEvents) {
+          listingEvent = new BackupEvents.DirectoryListingEvent();
+          listingEvent.begin();
+        } else {
+          listingEvent = null;
+        }
         if (!filenameIterator.hasNext()) {
           break;
         }
         String filename = filenameIterator.next();
-        // Remove from required
-        String requiredFilename = filename;
-        if (requiredFilename.endsWith(File.separator)) {
-          requiredFilename = requiredFilename.substring(0, requiredFilename.length() - 1);
+        if (listingEvent != null) {
+          listingEvent.end();
+          if (listingEvent.shouldCommit()) {
+            listingEvent.replication = pass.replication;
+            listingEvent.path = filename;
+            listingEvent.commit();
+          }
+        }
+        if (filename.endsWith(File.separator)) {
+          pass.directories++;
         }
         // System.err.println("DEBUG: BackupDaemon: filename="+filename);
-        remainingRequiredFilenames.remove(requiredFilename);
+        // Remove from required
+        remainingRequiredFilenames.found(filename);
         filenames[c++] = filename;
       }
+      if (c > 0) {
+        pass.currentPath = filenames[c - 1];
+      }
       return c;
     }
 
+    /**
+     * Creates the executor for parallel compression.  The threads are daemon threads that time-out when idle,
+     * so they are not retained even if the executor is not shutdown.
+     */
+    private static ExecutorService newCompressionExecutor(FileReplication ffr, int threads) {
+      AtomicInteger threadNum = new AtomicInteger();
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+          threads,
+          threads,
+          60,
+          TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          r -> {
+            Thread t = new Thread(r, BackupDaemonThread.class.getName() + ".compression(" + ffr.getPkey() + ")-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+          }
+      );
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+
     private final BackupEnvironment environment;
     private final FileReplication ffr;
+    private final BackupMetrics metrics;
+    private final ReplicationMetrics replicationMetrics;
+    private final PassLogOutbox outbox;
     private volatile boolean runNow;
     private Thread thread;
     private Thread lastThread;
 
-    private BackupDaemonThread(BackupEnvironment environment, FileReplication ffr) {
+    private BackupDaemonThread(BackupEnvironment environment, FileReplication ffr, BackupMetrics metrics, PassLogOutbox outbox) {
       this.environment = environment;
       this.ffr = ffr;
+      this.metrics = metrics;
+      this.replicationMetrics = metrics.register(ffr.getPkey());
+      this.outbox = outbox;
     }
 
     private synchronized void start() {
@@ -347,22 +472,42 @@ public final class BackupDaemon {
         try {
           short retention = ffr.getRetention().getDays();
 
-          // Get the last start time and success flag from the database (will be cached locally unless an error occurs
+          // Get the last start time and success flag from the local history or the database (will be cached locally unless an error occurs
           Timestamp lastStartTime = null;
           boolean lastPassSuccessful = false;
-          List<FileReplicationLog> ffls = ffr.getFailoverFileLogs(1);
-          if (!ffls.isEmpty()) {
-            FileReplicationLog lastLog = ffls.get(0);
+          PassHistory.Entry lastEntry = getLastLocalPass();
+          if (lastEntry != null) {
+            // Not querying the master avoids a stampede when many daemons are restarted together
+            lastStartTime = new Timestamp(lastEntry.getStartTime());
+            lastPassSuccessful = lastEntry.isSuccessful();
             if (isDebug) {
-              logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ") + "lastLog=" + lastLog);
+              logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ")
+                  + "From local history: lastStartTime=" + SQLUtility.formatDateTime(lastStartTime)
+                  + " and lastPassSuccessful=" + lastPassSuccessful);
             }
-            lastStartTime = lastLog.getStartTime();
-            if (isDebug) {
-              logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ") + "lastStartTime=" + SQLUtility.formatDateTime(lastStartTime));
+            if (lastPassSuccessful) {
+              // Used for the estimated time remaining of the next pass
+              replicationMetrics.setPreviousPass(lastEntry.getScanned(), lastEntry.getDuration());
             }
-            lastPassSuccessful = lastLog.isSuccessful();
-            if (isDebug) {
-              logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ") + "lastPassSuccessful=" + lastPassSuccessful);
+          } else {
+            List<FileReplicationLog> ffls = ffr.getFailoverFileLogs(1);
+            if (!ffls.isEmpty()) {
+              FileReplicationLog lastLog = ffls.get(0);
+              if (isDebug) {
+                logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ") + "lastLog=" + lastLog);
+              }
+              lastStartTime = lastLog.getStartTime();
+              if (isDebug) {
+                logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ") + "lastStartTime=" + SQLUtility.formatDateTime(lastStartTime));
+              }
+              lastPassSuccessful = lastLog.isSuccessful();
+              if (isDebug) {
+                logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ") + "lastPassSuccessful=" + lastPassSuccessful);
+              }
+              if (lastPassSuccessful) {
+                // Used for the estimated time remaining of the next pass
+                replicationMetrics.setPreviousPass(lastLog.getScanned(), lastLog.getEndTime().getTime() - lastStartTime.getTime());
+              }
             }
           }
           // Single calendar instance is used
@@ -370,6 +515,8 @@ public final class BackupDaemon {
           long lastCheckTime = -1;
           int lastCheckHour = -1; // The last hour that the schedule was checked
           int lastCheckMinute = -1; // The last minute that was checked
+          // The first check is staggered so that daemons restarted together do not query the master together
+          boolean isFirstCheck = true;
           while (true) {
             synchronized (this) {
               if (currentThread != thread || currentThread.isInterrupted()) {
@@ -383,7 +530,8 @@ public final class BackupDaemon {
                 // But they should start within 5 minutes of the schedule.  This is because many people
                 // may schedule for certain times (like 6:00 am exactly)
                 // long sleepyTime = 60L * 1000 + random.nextInt(4 * 60 * 1000);
-                long sleepyTime = 55L * 1000;
+                long sleepyTime = isFirstCheck ? fastRandom.nextInt(55 * 1000) : (55L * 1000);
+                isFirstCheck = false;
                 if (isDebug) {
                   logger.logp(Level.FINE, getClass().getName(), "run", (retention != 1 ? "Backup: " : "Failover: ")
                       + "Sleeping for " + sleepyTime + " milliseconds before checking if backup pass needed.");
@@ -641,7 +789,123 @@ public final class BackupDaemon {
       }
     }
 
-    @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch", "FinallyDiscardsException", "SleepWhileInLoop"})
+    /**
+     * Gets the last pass from the local history.
+     *
+     * @return  the last pass or {@code null} when the environment has no state directory or no pass is recorded
+     */
+    private PassHistory.Entry getLastLocalPass() {
+      try {
+        File stateDirectory = environment.getStateDirectory();
+        if (stateDirectory != null) {
+          List<PassHistory.Entry> entries = PassHistory.read(PassHistory.getFile(stateDirectory, ffr.getPkey()));
+          if (!entries.isEmpty()) {
+            return entries.get(entries.size() - 1);
+          }
+        }
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "getLastLocalPass", null, e);
+      }
+      return null;
+    }
+
+    /**
+     * Writes the metrics to the state directory, if the environment has one.
+     */
+    private void writeMetrics() {
+      try {
+        File stateDirectory = environment.getStateDirectory();
+        if (stateDirectory != null) {
+          metrics.writePrometheusFile(stateDirectory);
+        }
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "writeMetrics", null, e);
+      }
+    }
+
+    /**
+     * Writes the subtree cost report to the state directory, if the environment has one, and logs it when
+     * {@link Level#FINE} is enabled.
+     */
+    private void writeSubtreeReport(FileReplication ffr, PassMetrics pass, SubtreeReport subtreeReport) {
+      subtreeReport.finish();
+      Logger logger = environment.getLogger();
+      String title = "Subtree costs for " + ffr + " pass started " + new Date(pass.startTime)
+          + (pass.successful ? "" : " (unsuccessful)");
+      try {
+        File stateDirectory = environment.getStateDirectory();
+        if (stateDirectory != null) {
+          subtreeReport.write(new File(stateDirectory, SubtreeReport.getFilename(pass.replication)), title);
+        }
+      } catch (IOException e) {
+        logger.logp(Level.WARNING, getClass().getName(), "writeSubtreeReport", null, e);
+      }
+      if (logger.isLoggable(Level.FINE)) {
+        StringBuilder message = new StringBuilder(title).append(System.lineSeparator());
+        try {
+          subtreeReport.write(message);
+        } catch (IOException e) {
+          throw new AssertionError("StringBuilder does not throw IOException", e);
+        }
+        logger.logp(Level.FINE, getClass().getName(), "writeSubtreeReport", message.toString());
+      }
+    }
+
+    /**
+     * Appends the pass to its history in the state directory, if the environment has one, warning when the pass
+     * is a regression.
+     */
+    private void writeHistory(FileReplication ffr, PassMetrics pass, LatencyHistogram batchNanos) {
+      try {
+        File stateDirectory = environment.getStateDirectory();
+        if (stateDirectory != null) {
+          String regression = PassHistory.append(
+              PassHistory.getFile(stateDirectory, pass.replication),
+              PassHistory.Entry.of(pass, batchNanos)
+          );
+          if (regression != null) {
+            environment.getLogger().logp(Level.WARNING, getClass().getName(), "writeHistory", ffr + ": " + regression);
+          }
+        }
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "writeHistory", null, e);
+      }
+    }
+
+    /**
+     * Logs how far the previous pass got when it was interrupted.  The pass still starts from the beginning,
+     * since the replication protocol has no way to resume a pass.
+     */
+    private void logPreviousCheckpoint(FileReplication ffr, File checkpointFile) {
+      try {
+        PassCheckpoint previous = PassCheckpoint.read(checkpointFile);
+        if (previous != null) {
+          environment.getLogger().logp(Level.INFO, getClass().getName(), "logPreviousCheckpoint",
+              ffr + ": Previous pass started " + new Date(previous.getStartTime()) + " was interrupted after "
+                  + previous.getScanned() + " acknowledged entries, through " + previous.getPath());
+        }
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "logPreviousCheckpoint", null, e);
+      }
+    }
+
+    private void writeCheckpoint(File checkpointFile, PassCheckpoint checkpoint) {
+      try {
+        checkpoint.write(checkpointFile);
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "writeCheckpoint", null, e);
+      }
+    }
+
+    private void deleteCheckpoint(File checkpointFile) {
+      try {
+        PassCheckpoint.delete(checkpointFile);
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "deleteCheckpoint", null, e);
+      }
+    }
+
+    @SuppressWarnings("FinallyDiscardsException")
     private void backupPass(FileReplication ffr) throws IOException, SQLException {
       final Thread currentThread = Thread.currentThread();
 
@@ -677,6 +941,17 @@ public final class BackupDaemon {
 
         GregorianCalendar gcal = new GregorianCalendar();
         final long startTime = gcal.getTimeInMillis();
+        final PassMetrics pass = new PassMetrics(ffr.getPkey(), startTime);
+        replicationMetrics.publish(pass);
+        final SubtreeReport subtreeReport = new SubtreeReport(File.separator);
+        final LatencyHistogram batchNanos = new LatencyHistogram();
+        final File stateDirectory = environment.getStateDirectory();
+        final File checkpointFile = stateDirectory == null ? null : PassCheckpoint.getFile(stateDirectory, pass.replication);
+        if (checkpointFile != null) {
+          logPreviousCheckpoint(ffr, checkpointFile);
+        }
+        final BackupEvents.PassEvent passEvent = new BackupEvents.PassEvent();
+        passEvent.begin();
 
         if (isDebug) {
           logger.logp(Level.FINE, getClass().getName(), "backupPass", (retention > 1 ? "Backup: " : "Failover: ") + "useCompression=" + useCompression);
@@ -686,11 +961,12 @@ public final class BackupDaemon {
         }
 
         // Keep statistics during the replication
-        int scanned = 0;
-        int updated = 0;
+        int hardLinkRepeats = 0;
         long rawBytesOut = 0;
         long rawBytesIn = 0;
         boolean isSuccessful = false;
+        // The last position where every file has been acknowledged by the daemon
+        PassCheckpoint acknowledged = null;
         try {
           // Get the connection to the daemon
           Server.DaemonAccess daemonAccess = ffr.requestReplicationDaemonAccess();
@@ -726,7 +1002,8 @@ public final class BackupDaemon {
               // Start the replication
               StreamableOutput rawOut = daemonConn.getRequestOut(AoservDaemonProtocol.FAILOVER_FILE_REPLICATION);
 
-              final MD5 md5 = useCompression ? new MD5() : null;
+              // Only MD5 is supported by the daemon protocol at this time
+              final ChunkDigest chunkDigest = useCompression ? ChunkDigest.Algorithm.MD5.newInstance() : null;
 
               rawOut.writeLong(daemonAccess.getKey());
               rawOut.writeBoolean(useCompression);
@@ -765,52 +1042,126 @@ public final class BackupDaemon {
               }
               if (result == AoservDaemonProtocol.NEXT) {
                 // Only the output is limited because input should always be smaller than the output
+                final BitRateProvider configuredBitRate = new DynamicBitRateProvider(environment, ffr);
+                final AdaptiveBitRateProvider adaptiveBitRate =
+                    environment.isAdaptiveBitRate(ffr) ? new AdaptiveBitRateProvider(configuredBitRate) : null;
+                // Time blocked by the bit rate limit is measured separately from time writing to the network
                 final ByteCountOutputStream rawBytesOutStream = new ByteCountOutputStream(
-                    new BitRateOutputStream(
-                        rawOut,
-                        new DynamicBitRateProvider(environment, ffr)
+                    new PhaseTimingOutputStream(
+                        new BitRateOutputStream(
+                            new PhaseTimingOutputStream(rawOut, pass, BackupPhase.NETWORK, null),
+                            adaptiveBitRate != null ? adaptiveBitRate : configuredBitRate
+                        ),
+                        pass,
+                        BackupPhase.THROTTLE,
+                        BackupPhase.NETWORK
                     )
                 );
+                final boolean useGzip = useCompression && daemonConn.getProtocolVersion().compareTo(AoservDaemonProtocol.Version.VERSION_1_84_19) >= 0;
+                final int compressionThreads = useGzip ? environment.getCompressionThreads(ffr) : 1;
+                final ExecutorService compressionExecutor = compressionThreads > 1 ? newCompressionExecutor(ffr, compressionThreads) : null;
                 final StreamableOutput out = new StreamableOutput(
-                    useCompression && daemonConn.getProtocolVersion().compareTo(AoservDaemonProtocol.Version.VERSION_1_84_19) >= 0
-                        ? new GZIPOutputStream(rawBytesOutStream, AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_GZIP_BUFFER_SIZE, true)
+                    useGzip
+                        ? (
+                          compressionExecutor != null
+                              ? new ParallelGzipOutputStream(
+                                  rawBytesOutStream,
+                                  compressionExecutor,
+                                  Deflater.DEFAULT_COMPRESSION,
+                                  ParallelGzipOutputStream.getMaxBlocksInFlight(compressionThreads, environment.getCompressionMemory(ffr))
+                              )
+                              : new GZIPOutputStream(rawBytesOutStream, AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_GZIP_BUFFER_SIZE, true)
+                        )
                         // ? new AutoFinishGZIPOutputStream(NoCloseOutputStream.wrap(rawBytesOutStream), BufferManager.BUFFER_SIZE)
                         : rawBytesOutStream
                 );
 
                 final ByteCountInputStream rawBytesInStream = new ByteCountInputStream(rawIn);
                 final StreamableInput in = new StreamableInput(rawBytesInStream);
+                PrefetchingIterator prefetchingIterator = null;
                 try {
                   // Do requests in batches
                   final String[] filenames = new String[failoverBatchSize];
                   final int[] results = new int[failoverBatchSize];
+                  // The costs of each file in the batch, for the subtree report
+                  final long[] fileNanos = new long[failoverBatchSize];
+                  final long[] fileBytes = new long[failoverBatchSize];
+                  final long[] fileChunks = new long[failoverBatchSize];
                   final long[] chunkingSizes = useCompression ? new long[failoverBatchSize] : null;
                   final long[][] md5His = useCompression ? new long[failoverBatchSize][] : null;
                   final long[][] md5Los = useCompression ? new long[failoverBatchSize][] : null;
-                  final Set<String> remainingRequiredFilenames = new LinkedHashSet<>(environment.getRequiredFilenames(ffr));
+                  final RequiredFilenames remainingRequiredFilenames = new RequiredFilenames(environment.getRequiredFilenames(ffr));
                   final byte[] chunkBuffer = new byte[AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE];
-                  final Iterator<String> filenameIterator = environment.getFilenameIterator(ffr);
+                  final int filenamePrefetch = environment.getFilenamePrefetch(ffr);
+                  final Iterator<String> filenameIterator;
+                  if (filenamePrefetch > 0) {
+                    // Directories are listed in the background while waiting on the daemon
+                    prefetchingIterator = new PrefetchingIterator(
+                        environment.getFilenameIterator(ffr),
+                        filenamePrefetch,
+                        BackupDaemonThread.class.getName() + ".prefetch(" + ffr.getPkey() + ")"
+                    );
+                    filenameIterator = prefetchingIterator;
+                  } else {
+                    filenameIterator = environment.getFilenameIterator(ffr);
+                  }
+                  // Additional hard links are only counted when debugging, since each is still sent in full
+                  final PosixFileEnvironment posixEnvironment =
+                      isDebug && environment instanceof PosixFileEnvironment ? (PosixFileEnvironment) environment : null;
+                  // The inodes seen with more than one link, by device
+                  final Map<Long, Set<Long>> linkedInodes = posixEnvironment == null ? null : new HashMap<>();
+                  String previousBatchLastPath = null;
+                  long previousBatchScanned = 0;
+                  long checkpointWritten = System.currentTimeMillis();
+                  long sampleThrottleNanos = pass.getNanos(BackupPhase.THROTTLE);
                   while (true) {
                     synchronized (this) {
                       if (currentThread != thread || currentThread.isInterrupted()) {
                         return;
                       }
                     }
-                    int batchSize = getNextFilenames(remainingRequiredFilenames, filenameIterator, filenames, failoverBatchSize);
+                    long scanStart = System.nanoTime();
+                    int batchSize;
+                    try {
+                      batchSize = getNextFilenames(remainingRequiredFilenames, filenameIterator, filenames, failoverBatchSize, pass);
+                    } catch (CancellationException e) {
+                      // The prefetch wait is cancelled when stopped, which ends the pass like the checks above
+                      synchronized (this) {
+                        if (currentThread != thread || currentThread.isInterrupted()) {
+                          return;
+                        }
+                      }
+                      throw e;
+                    }
+                    pass.time(BackupPhase.SCAN, scanStart);
                     if (batchSize == 0) {
                       break;
                     }
+                    final String batchLastPath = pass.currentPath;
 
+                    final long batchBytesStart = rawBytesOutStream.getCount();
                     out.writeCompressedInt(batchSize);
                     for (int d = 0; d < batchSize; d++) {
-                      scanned++;
+                      pass.scanned++;
                       String filename = filenames[d];
+                      fileBytes[d] = 0;
+                      fileChunks[d] = 0;
+                      final long statStart = System.nanoTime();
                       try {
                         long mode = environment.getStatMode(ffr, filename);
                         if (!PosixFile.isSocket(mode)) {
                           // Get all the values first to avoid FileNotFoundException in middle of protocol
                           final boolean isRegularFile = PosixFile.isRegularFile(mode);
                           final long size = isRegularFile ? environment.getLength(ffr, filename) : -1;
+                          if (isRegularFile && posixEnvironment != null) {
+                            Stat stat = posixEnvironment.getStat(ffr, filename);
+                            if (
+                                stat.getNumberLinks() > 1
+                                    && !linkedInodes.computeIfAbsent(stat.getDevice(), device -> new HashSet<>()).add(stat.getInode())
+                            ) {
+                              hardLinkRepeats++;
+                            }
+                          }
                           final int uid = environment.getUid(ffr, filename);
                           final int gid = environment.getGid(ffr, filename);
                           final boolean isSymLink = PosixFile.isSymLink(mode);
@@ -837,6 +1188,8 @@ public final class BackupDaemon {
                           final boolean isDevice = PosixFile.isBlockDevice(mode) || PosixFile.isCharacterDevice(mode);
                           final long deviceId = isDevice ? environment.getDeviceIdentifier(ffr, filename) : -1;
 
+                          final long encodeStart = pass.time(BackupPhase.STAT, statStart);
+                          fileNanos[d] = encodeStart - statStart;
                           out.writeBoolean(true);
                           // Adjust the filename to server formatting
                           final String serverPath = environment.getServerPath(ffr, filename);
@@ -872,16 +1225,27 @@ public final class BackupDaemon {
                           } else if (isDevice) {
                             out.writeLong(deviceId);
                           }
+                          pass.time(BackupPhase.ENCODE, encodeStart);
                         } else {
                           filenames[d] = null;
                           out.writeBoolean(false);
+                          fileNanos[d] = pass.time(BackupPhase.STAT, statStart) - statStart;
                         }
                       } catch (FileNotFoundException err) {
                         // Normal because of a dynamic file system
                         filenames[d] = null;
                         out.writeBoolean(false);
+                        fileNanos[d] = pass.time(BackupPhase.STAT, statStart) - statStart;
                       }
                     }
+                    final BackupEvents.BatchEvent batchEvent;
+                    if (BackupEvents.BatchEvent.TYPE.isEnabled()) {
+                      batchEvent = new BackupEvents.BatchEvent();
+                      batchEvent.begin();
+                    } else {
+                      batchEvent = null;
+                    }
+                    final long waitStart = System.nanoTime();
                     out.flush();
                     // Recreate the compressed stream after flush because GZIPOutputStream is broken.
                     /*if (useCompression) {
@@ -896,7 +1260,13 @@ public final class BackupDaemon {
                     }
 
                     // Read the results
+                    final long flushed = System.nanoTime();
                     result = in.read();
+                    if (adaptiveBitRate != null) {
+                      long throttleNanos = pass.getNanos(BackupPhase.THROTTLE);
+                      adaptiveBitRate.addSample(System.nanoTime() - flushed, throttleNanos - sampleThrottleNanos);
+                      sampleThrottleNanos = throttleNanos;
+                    }
                     synchronized (this) {
                       if (currentThread != thread || currentThread.isInterrupted()) {
                         return;
@@ -918,14 +1288,7 @@ public final class BackupDaemon {
                           } else if (result == AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_MODIFIED_REQUEST_DATA_CHUNKED) {
                             hasRequestData = true;
                             long chunkingSize = in.readLong();
-                            int numChunks;
-                            {
-                              long numChunksL = chunkingSize >> AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE_BITS;
-                              if ((chunkingSize & (AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE - 1)) != 0) {
-                                numChunksL++;
-                              }
-                              numChunks = SafeMath.castInt(numChunksL);
-                            }
+                            int numChunks = ChunkSizing.getNumChunks(chunkingSize);
                             long[] md5Hi = new long[numChunks];
                             long[] md5Lo = new long[numChunks];
                             for (int e = 0; e < numChunks; e++) {
@@ -947,6 +1310,26 @@ public final class BackupDaemon {
                         throw new IOException("Unknown result: " + result);
                       }
                     }
+                    batchNanos.record(pass.time(BackupPhase.WAIT, waitStart) - waitStart);
+                    pass.batches++;
+                    // Every file of the previous batch has now been acknowledged
+                    if (checkpointFile != null && previousBatchLastPath != null) {
+                      acknowledged = new PassCheckpoint(startTime, previousBatchScanned, previousBatchLastPath);
+                      long now = System.currentTimeMillis();
+                      if (Math.abs(now - checkpointWritten) >= PassCheckpoint.WRITE_INTERVAL) {
+                        writeCheckpoint(checkpointFile, acknowledged);
+                        checkpointWritten = now;
+                      }
+                    }
+                    if (batchEvent != null) {
+                      batchEvent.end();
+                      if (batchEvent.shouldCommit()) {
+                        batchEvent.replication = pass.replication;
+                        batchEvent.files = batchSize;
+                        batchEvent.bytes = rawBytesOutStream.getCount() - batchBytesStart;
+                        batchEvent.commit();
+                      }
+                    }
                     synchronized (this) {
                       if (currentThread != thread || currentThread.isInterrupted()) {
                         return;
@@ -977,16 +1360,19 @@ public final class BackupDaemon {
                           if (isDebug) {
                             logger.logp(Level.FINE, getClass().getName(), "backupPass", (retention > 1 ? "Backup: " : "Failover: ") + "File modified: " + filename);
                           }
-                          updated++;
+                          pass.updated++;
                         } else if (result == AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_MODIFIED_REQUEST_DATA) {
                           assert outgoing != null;
-                          updated++;
+                          pass.updated++;
                           try {
                             if (isDebug) {
                               logger.logp(Level.FINE, getClass().getName(), "backupPass", (retention > 1 ? "Backup: " : "Failover: ") + "Sending file contents: " + filename);
                             }
+                            pass.filesSent++;
+                            final BackupEvents.FileTransferEvent transferEvent = BackupEvents.beginFileTransfer();
                             // Shortcut for 0 length files (don't open for reading)
-                            if (environment.getLength(ffr, filename) != 0) {
+                            final long length = environment.getLength(ffr, filename);
+                            if (length != 0) {
                               try (InputStream fileIn = environment.getInputStream(ffr, filename)) {
                                 // Read in full chunk size until end of file
                                 // Only the last chunk may be less than a full chunk size
@@ -996,6 +1382,7 @@ public final class BackupDaemon {
                                       return;
                                     }
                                   }
+                                  long readStart = System.nanoTime();
                                   int pos = 0;
                                   do {
                                     int ret = fileIn.read(chunkBuffer, pos, AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE - pos);
@@ -1004,6 +1391,8 @@ public final class BackupDaemon {
                                     }
                                     pos += ret;
                                   } while (pos < AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE);
+                                  long sendStart = pass.time(BackupPhase.READ, readStart);
+                                  fileNanos[d] += sendStart - readStart;
                                   synchronized (this) {
                                     if (currentThread != thread || currentThread.isInterrupted()) {
                                       return;
@@ -1013,6 +1402,8 @@ public final class BackupDaemon {
                                     outgoing.write(AoservDaemonProtocol.NEXT);
                                     outgoing.writeCompressedInt(pos);
                                     outgoing.write(chunkBuffer, 0, pos);
+                                    pass.time(BackupPhase.SEND, sendStart);
+                                    fileBytes[d] += pos;
                                   }
                                   // Check end of file
                                   if (pos < AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE) {
@@ -1021,6 +1412,7 @@ public final class BackupDaemon {
                                 }
                               }
                             }
+                            BackupEvents.commitFileTransfer(transferEvent, pass.replication, filename, length, false, 0, 0);
                           } catch (FileNotFoundException err) {
                             // Normal when the file was deleted
                           } catch (IOException e) {
@@ -1035,16 +1427,21 @@ public final class BackupDaemon {
                           }
                         } else if (result == AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_MODIFIED_REQUEST_DATA_CHUNKED) {
                           assert outgoing != null;
-                          assert md5 != null;
-                          updated++;
+                          assert chunkDigest != null;
+                          pass.updated++;
                           try {
                             if (isDebug) {
                               logger.logp(Level.FINE, getClass().getName(), "backupPass", (retention > 1 ? "Backup: " : "Failover: ") + "Chunking file contents: " + filename);
                             }
+                            pass.filesSent++;
+                            final BackupEvents.FileTransferEvent transferEvent = BackupEvents.beginFileTransfer();
+                            final long chunksSentStart = pass.chunksSent;
+                            final long chunksMatchedStart = pass.chunksMatched;
                             final long[] md5Hi = md5His[d];
                             final long[] md5Lo = md5Los[d];
                             assert md5Lo.length == md5Hi.length;
                             final int numChunks = md5Hi.length;
+                            final long chunkingSize = chunkingSizes[d];
                             try (InputStream fileIn = environment.getInputStream(ffr, filename)) {
                               int chunkNumber = 0;
                               int sendChunkCount = 0;
@@ -1055,7 +1452,10 @@ public final class BackupDaemon {
                                   }
                                 }
                                 // Read fully one chunk or to end of file
+                                final long readStart = System.nanoTime();
                                 int pos = fileIn.readNBytes(chunkBuffer, 0, AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE);
+                                long sendStart = pass.time(BackupPhase.READ, readStart);
+                                fileNanos[d] += sendStart - readStart;
                                 synchronized (this) {
                                   if (currentThread != thread || currentThread.isInterrupted()) {
                                     return;
@@ -1063,42 +1463,37 @@ public final class BackupDaemon {
                                 }
                                 if (pos > 0) {
                                   if (chunkNumber < numChunks) {
-                                    final int chunkSize;
-                                    if (chunkNumber < (numChunks - 1)) {
-                                      // All but last chunk must be full-sized
-                                      chunkSize = AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE;
-                                    } else {
-                                      assert chunkNumber == (numChunks - 1);
-                                      // Last chunk may be partial
-                                      chunkSize = SafeMath.castInt(chunkingSizes[d] - (((long) chunkNumber) << AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE_BITS));
-                                      assert chunkSize > 0 && chunkSize <= AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE;
-                                    }
+                                    final int chunkSize = ChunkSizing.getChunkSize(chunkingSize, chunkNumber, numChunks);
                                     if (pos < chunkSize) {
                                       // Last chunk not fully read, just send data
                                       sendChunkCount++;
+                                      pass.chunksSent++;
+                                      fileChunks[d]++;
+                                      fileBytes[d] += pos;
                                       outgoing.write(AoservDaemonProtocol.NEXT);
                                       outgoing.writeCompressedInt(pos);
                                       outgoing.write(chunkBuffer, 0, pos);
                                     } else {
-                                      // Calculate the MD5 hash
-                                      md5.init();
-                                      md5.update(chunkBuffer, 0, chunkSize);
-                                      byte[] md5Bytes = md5.digest();
-                                      if (
-                                          md5Hi[chunkNumber] != MD5.getMD5Hi(md5Bytes)
-                                              || md5Lo[chunkNumber] != MD5.getMD5Lo(md5Bytes)
-                                      ) {
+                                      // Calculate the MD5 hash, which is cached for chunks of all zeros
+                                      chunkDigest.digest(chunkBuffer, 0, chunkSize);
+                                      sendStart = pass.time(BackupPhase.HASH, sendStart);
+                                      if (!chunkDigest.matches(md5Hi[chunkNumber], md5Lo[chunkNumber])) {
                                         // MD5 mismatch, just send data
                                         sendChunkCount++;
+                                        pass.chunksSent++;
+                                        fileChunks[d]++;
+                                        fileBytes[d] += pos;
                                         outgoing.write(AoservDaemonProtocol.NEXT);
                                         outgoing.writeCompressedInt(pos);
                                         outgoing.write(chunkBuffer, 0, pos);
                                       } else {
+                                        pass.chunksMatched++;
                                         outgoing.write(AoservDaemonProtocol.NEXT_CHUNK);
                                         // Send any beyond the last chunk (file has grown)
                                         if (pos > chunkSize) {
                                           outgoing.write(AoservDaemonProtocol.NEXT);
                                           int bytesBeyond = pos - chunkSize;
+                                          fileBytes[d] += bytesBeyond;
                                           outgoing.writeCompressedInt(bytesBeyond);
                                           outgoing.write(chunkBuffer, chunkSize, bytesBeyond);
                                         }
@@ -1106,10 +1501,14 @@ public final class BackupDaemon {
                                     }
                                   } else {
                                     // Chunk past those sent from server
+                                    pass.chunksSent++;
+                                    fileChunks[d]++;
+                                    fileBytes[d] += pos;
                                     outgoing.write(AoservDaemonProtocol.NEXT);
                                     outgoing.writeCompressedInt(pos);
                                     outgoing.write(chunkBuffer, 0, pos);
                                   }
+                                  pass.time(BackupPhase.SEND, sendStart);
                                   // Increment chunk number for next iteration
                                   chunkNumber++;
                                 }
@@ -1123,6 +1522,8 @@ public final class BackupDaemon {
                                     (retention > 1 ? "Backup: " : "Failover: ") + "Chunking file contents: " + filename
                                         + ": Sent " + sendChunkCount + " out of " + chunkNumber + " chunks");
                               }
+                              BackupEvents.commitFileTransfer(transferEvent, pass.replication, filename, chunkingSize, true,
+                                  pass.chunksSent - chunksSentStart, pass.chunksMatched - chunksMatchedStart);
                             }
                           } catch (FileNotFoundException err) {
                             // Normal when the file was deleted
@@ -1142,6 +1543,15 @@ public final class BackupDaemon {
                       }
                     }
 
+                    // Rank the costs of the batch
+                    for (int d = 0; d < batchSize; d++) {
+                      String filename = filenames[d];
+                      if (filename != null) {
+                        subtreeReport.add(filename, fileBytes[d], fileChunks[d], fileNanos[d],
+                            results[d] != AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_NO_CHANGE);
+                      }
+                    }
+
                     // Flush any file data that was sent
                     if (hasRequestData) {
                       assert outgoing != null;
@@ -1150,15 +1560,27 @@ public final class BackupDaemon {
                           return;
                         }
                       }
+                      final long sendStart = System.nanoTime();
                       outgoing.flush();
+                      pass.time(BackupPhase.SEND, sendStart);
                     }
+                    previousBatchLastPath = batchLastPath;
+                    previousBatchScanned = pass.scanned;
+                    // Publish the progress of the pass
+                    pass.bytesOut = rawBytesOutStream.getCount();
+                    pass.bytesIn = rawBytesInStream.getCount();
+                    replicationMetrics.publish(pass);
                   }
 
+                  if (isDebug && hardLinkRepeats > 0) {
+                    logger.logp(Level.FINE, getClass().getName(), "backupPass", (retention > 1 ? "Backup: " : "Failover: ")
+                        + "Additional hard links to inodes already seen: " + hardLinkRepeats);
+                  }
                   // Error now if not all required have been found
                   if (!remainingRequiredFilenames.isEmpty()) {
                     StringBuilder message = new StringBuilder("Required files not found.  Successfully sent all found,"
                         + " but not flagging the backup as successful because the following files were missing:");
-                    for (String filename : remainingRequiredFilenames) {
+                    for (String filename : remainingRequiredFilenames.getRemaining()) {
                       message.append(System.lineSeparator()).append(filename);
                     }
                     throw new IOException(message.toString());
@@ -1193,6 +1615,12 @@ public final class BackupDaemon {
                     }
                   }
                 } finally {
+                  if (prefetchingIterator != null) {
+                    prefetchingIterator.close();
+                  }
+                  if (compressionExecutor != null) {
+                    compressionExecutor.shutdownNow();
+                  }
                   // Store the bytes transferred
                   rawBytesOut = rawBytesOutStream.getCount();
                   rawBytesIn = rawBytesInStream.getCount();
@@ -1213,26 +1641,47 @@ public final class BackupDaemon {
           }
           isSuccessful = true;
         } finally {
-          // Store the statistics
-          for (int c = 0; c < 10; c++) {
-            // Try in a loop with delay in case master happens to be restarting
-            try {
-              ffr.addFailoverFileLog(startTime, System.currentTimeMillis(), scanned, updated, rawBytesOut + rawBytesIn, isSuccessful);
-              break;
-            } catch (Throwable t) {
-              if (c >= 10) {
-                environment.getLogger().logp(Level.SEVERE, getClass().getName(), "backupPass", "Error adding failover file log, giving up", t);
-              } else {
-                environment.getLogger().logp(Level.SEVERE, getClass().getName(), "backupPass", "Error adding failover file log, will retry in one minute", t);
-                try {
-                  Thread.sleep(60L * 1000);
-                } catch (InterruptedException err2) {
-                  environment.getLogger().logp(Level.WARNING, getClass().getName(), "backupPass", null, err2);
-                  // Restore the interrupted status
-                  currentThread.interrupt();
-                  break;
-                }
-              }
+          pass.endTime = System.currentTimeMillis();
+          pass.successful = isSuccessful;
+          pass.bytesOut = rawBytesOut;
+          pass.bytesIn = rawBytesIn;
+          // Store the statistics, delivered to the master in the background
+          // This is first so that an error in the local reporting below cannot lose them
+          outbox.add(new PassLogOutbox.Record(
+              pass.replication,
+              startTime,
+              pass.endTime,
+              SafeMath.castInt(pass.scanned),
+              SafeMath.castInt(pass.updated),
+              rawBytesOut + rawBytesIn,
+              isSuccessful
+          ));
+          replicationMetrics.passEnded(pass);
+          passEvent.end();
+          if (passEvent.shouldCommit()) {
+            passEvent.replication = pass.replication;
+            passEvent.scanned = pass.scanned;
+            passEvent.updated = pass.updated;
+            passEvent.bytes = rawBytesOut + rawBytesIn;
+            passEvent.successful = isSuccessful;
+            passEvent.commit();
+          }
+          if (isDebug) {
+            StringBuilder message = new StringBuilder();
+            message.append(retention > 1 ? "Backup: " : "Failover: ").append("Pass phases:");
+            for (BackupPhase phase : BackupPhase.getValues()) {
+              message.append(' ').append(phase).append('=').append(pass.getNanos(phase) / 1000000).append("ms");
+            }
+            logger.logp(Level.FINE, getClass().getName(), "backupPass", message.toString());
+          }
+          writeMetrics();
+          writeSubtreeReport(ffr, pass, subtreeReport);
+          writeHistory(ffr, pass, batchNanos);
+          if (checkpointFile != null) {
+            if (isSuccessful) {
+              deleteCheckpoint(checkpointFile);
+            } else if (acknowledged != null) {
+              writeCheckpoint(checkpointFile, acknowledged);
             }
           }
         }
@@ -1255,7 +1704,9 @@ public final class BackupDaemon {
    */
   @SuppressWarnings({"UseOfSystemOutOrSystemErr", "UseSpecificCatch", "TooBroadCatch", "SleepWhileInLoop"})
   public static void main(String[] args) {
-    if (args.length != 1) {
+    if (args.length > 0 && "--scan".equals(args[0])) {
+      System.exit(scan(args));
+    } else if (args.length != 1) {
       try {
         showUsage();
         System.exit(1);
@@ -1297,6 +1748,56 @@ public final class BackupDaemon {
     }
   }
 
+  /**
+   * Runs the scan subcommand.
+   *
+   * @return  the exit status
+   */
+  @SuppressWarnings("UseOfSystemOutOrSystemErr")
+  private static int scan(String[] args) {
+    int pos = 1;
+    boolean hash = false;
+    if (pos < args.length && "--hash".equals(args[pos])) {
+      hash = true;
+      pos++;
+    }
+    if (pos == args.length || (args.length - pos) > 2) {
+      try {
+        showUsage();
+        return 1;
+      } catch (IOException err) {
+        ErrorPrinter.printStackTraces(err, System.err);
+        return 5;
+      }
+    }
+    String environmentClassname = args[pos++];
+    BackupEnvironment environment;
+    try {
+      environment = (BackupEnvironment) Class.forName(environmentClassname).getConstructor().newInstance();
+    } catch (ReflectiveOperationException err) {
+      ErrorPrinter.printStackTraces(err, System.err, "environment_classname=" + environmentClassname);
+      return 2;
+    }
+    try {
+      FileReplication ffr;
+      if (pos < args.length) {
+        int pkey = Integer.parseInt(args[pos]);
+        ffr = environment.getConnector().getBackup().getFileReplication().get(pkey);
+        if (ffr == null) {
+          System.err.println("Replication not found: " + pkey);
+          return 3;
+        }
+      } else {
+        ffr = null;
+      }
+      new ScanBenchmark(environment, ffr, hash, System.out).run();
+      return 0;
+    } catch (IOException | SQLException | RuntimeException err) {
+      ErrorPrinter.printStackTraces(err, System.err);
+      return 4;
+    }
+  }
+
   /**
    * Shows command line usage.
    */
@@ -1309,6 +1810,7 @@ public final class BackupDaemon {
     out.attributesOff();
     out.println();
     out.println("\t" + BackupDaemon.class.getName() + " {environment_classname}");
+    out.println("\t" + BackupDaemon.class.getName() + " --scan [--hash] {environment_classname} [replication]");
     out.println();
     out.boldOn();
     out.print("DESCRIPTION");
@@ -1321,6 +1823,12 @@ public final class BackupDaemon {
     out.println("\tclass name of a " + BackupEnvironment.class.getName() + ".  One instance");
     out.println("\tof this class will be created via the default constructor.");
     out.println();
+    out.println("\tWith --scan, walks the files of the replication and collects their metadata");
+    out.println("\twithout contacting any daemon, then reports entries per second, directories");
+    out.println("\tper second, stat latency percentiles, and heap use.  With --hash, the contents");
+    out.println("\tof regular files are also read and hashed to measure read throughput.  The");
+    out.println("\treplication may be omitted only for environments that do not require one.");
+    out.println();
     out.flush();
   }
 }
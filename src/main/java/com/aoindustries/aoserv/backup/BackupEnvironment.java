@@ -1,6 +1,6 @@
 /*
  * aoserv-backup - Backup client for the AOServ Platform.
- * Copyright (C) 2003-2013, 2017, 2018, 2019, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2003-2013, 2017, 2018, 2019, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -28,6 +28,7 @@ import com.aoindustries.aoserv.client.AoservConnector;
 import com.aoindustries.aoserv.client.backup.FileReplication;
 import com.aoindustries.aoserv.client.mysql.Server;
 import com.aoindustries.aoserv.client.net.Host;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
@@ -112,6 +113,55 @@ public interface BackupEnvironment {
    */
   int getFailoverBatchSize(FileReplication ffr) throws IOException, SQLException;
 
+  /**
+   * Gets the number of threads used to compress the outgoing stream when compression is enabled.
+   * A value of one, the default, compresses on the replication thread.
+   */
+  default int getCompressionThreads(FileReplication ffr) throws IOException, SQLException {
+    return 1;
+  }
+
+  /**
+   * Gets the maximum number of bytes of uncompressed data held while being compressed
+   * in parallel.  Only used when {@link #getCompressionThreads(FileReplication)} is more than one.
+   * Defaults to 16 MiB.
+   */
+  default long getCompressionMemory(FileReplication ffr) throws IOException, SQLException {
+    return 16L * 1024 * 1024;
+  }
+
+  /**
+   * Gets the number of filenames read ahead by a background thread, overlapping the filesystem walk
+   * with the time waiting on the daemon.  A value of zero, the default, walks on the replication thread.
+   *
+   * <p>The iterator from {@link #getFilenameIterator(FileReplication)} is used by the background thread
+   * when more than zero.</p>
+   */
+  default int getFilenamePrefetch(FileReplication ffr) throws IOException, SQLException {
+    return 0;
+  }
+
+  /**
+   * Gets the profile that sets the bit rate by the time of day and the day of the week.  This is called about
+   * once per second while sending data, so a running pass follows both the windows and any change to the profile.
+   *
+   * <p>There is no profile by default.</p>
+   *
+   * @return  the profile or {@code null} to always use the bit rate of the replication
+   */
+  default BitRateProfile getBitRateProfile(FileReplication ffr) throws IOException, SQLException {
+    return null;
+  }
+
+  /**
+   * Enables the adjustment of the bit rate to the queuing delay of the link, using the spare capacity of the
+   * link while backing off when the delay rises.  The bit rate of the replication, or of its
+   * {@link #getBitRateProfile(FileReplication) profile}, remains the maximum.  Disabled by default.
+   */
+  default boolean isAdaptiveBitRate(FileReplication ffr) throws IOException, SQLException {
+    return false;
+  }
+
   /**
    * Called right before a backup pass begins.
    * Implementations should call super.preBackup first.
@@ -203,6 +253,20 @@ public interface BackupEnvironment {
    */
   Logger getLogger();
 
+  /**
+   * Gets the directory where local state, such as metrics, is stored.  The directory must already exist.
+   * No local state is stored by default.
+   *
+   * <p>The files in this directory are rewritten by the daemon.  A {@link FileEnvironment} also reads its
+   * configuration files from here, unless it has a separate
+   * {@link FileEnvironment#getConfigurationDirectory() configuration directory}.</p>
+   *
+   * @return  the directory or {@code null} to not store any local state
+   */
+  default File getStateDirectory() throws IOException {
+    return null;
+  }
+
   /**
    * Converts an environment-specific filename into a server path.  The server
    * path must begin with /, may not contain /../, and must use / as the path
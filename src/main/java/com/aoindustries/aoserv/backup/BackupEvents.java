@@ -0,0 +1,228 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the replication hot paths.
+ *
+ * <p>All events are disabled by default and must be enabled in the recording settings, such as
+ * <code>-XX:StartFlightRecording:settings=custom.jfc</code>.  Events created per file or per write are only
+ * allocated when their type is enabled.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class BackupEvents {
+
+  /** Make no instances. */
+  private BackupEvents() {
+    throw new AssertionError();
+  }
+
+  private static final String NAME_PREFIX = "com.aoindustries.aoserv.backup.";
+
+  private static final String CATEGORY_AOSERV = "AOServ";
+
+  private static final String CATEGORY_BACKUP = "Backup";
+
+  /**
+   * Begins a file transfer event when enabled.
+   *
+   * @return  the event or {@code null} when not enabled
+   */
+  static FileTransferEvent beginFileTransfer() {
+    if (FileTransferEvent.TYPE.isEnabled()) {
+      FileTransferEvent event = new FileTransferEvent();
+      event.begin();
+      return event;
+    } else {
+      return null;
+    }
+  }
+
+  /**
+   * Ends and commits a file transfer event, if begun and above its threshold.
+   */
+  static void commitFileTransfer(FileTransferEvent event, int replication, String path, long size, boolean chunked,
+      long chunksSent, long chunksMatched) {
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.replication = replication;
+        event.path = path;
+        event.size = size;
+        event.chunked = chunked;
+        event.chunksSent = chunksSent;
+        event.chunksMatched = chunksMatched;
+        event.commit();
+      }
+    }
+  }
+
+  /**
+   * One backup pass, from start to end.
+   */
+  @Name(NAME_PREFIX + "Pass")
+  @Label("Backup Pass")
+  @Category({CATEGORY_AOSERV, CATEGORY_BACKUP})
+  @Enabled(false)
+  @StackTrace(false)
+  static final class PassEvent extends Event {
+
+    @Label("Replication")
+    int replication;
+
+    @Label("Scanned")
+    long scanned;
+
+    @Label("Updated")
+    long updated;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Successful")
+    boolean successful;
+  }
+
+  /**
+   * The round trip of one batch, from sending the batch to receiving all of its results.
+   */
+  @Name(NAME_PREFIX + "Batch")
+  @Label("Backup Batch")
+  @Category({CATEGORY_AOSERV, CATEGORY_BACKUP})
+  @Enabled(false)
+  @StackTrace(false)
+  static final class BatchEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(BatchEvent.class);
+
+    @Label("Replication")
+    int replication;
+
+    @Label("Files")
+    int files;
+
+    @Label("Bytes Sent")
+    @Description("The bytes sent for the batch metadata, after compression")
+    @DataAmount
+    long bytes;
+  }
+
+  /**
+   * The transfer of the contents of one file.
+   */
+  @Name(NAME_PREFIX + "FileTransfer")
+  @Label("Backup File Transfer")
+  @Category({CATEGORY_AOSERV, CATEGORY_BACKUP})
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("1 s")
+  static final class FileTransferEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(FileTransferEvent.class);
+
+    @Label("Replication")
+    int replication;
+
+    @Label("Path")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Chunked")
+    boolean chunked;
+
+    @Label("Chunks Sent")
+    long chunksSent;
+
+    @Label("Chunks Matched")
+    long chunksMatched;
+  }
+
+  /**
+   * One step of the filesystem walk.  The walk lists each directory as it descends, so slow steps are
+   * typically large or slow directory listings.
+   */
+  @Name(NAME_PREFIX + "DirectoryListing")
+  @Label("Backup Directory Listing")
+  @Category({CATEGORY_AOSERV, CATEGORY_BACKUP})
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("20 ms")
+  static final class DirectoryListingEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(DirectoryListingEvent.class);
+
+    @Label("Replication")
+    int replication;
+
+    @Label("Path")
+    @Description("The next path after the step")
+    String path;
+  }
+
+  /**
+   * A write to the daemon that stalled, either blocked by the bit rate limit or by the network.
+   */
+  @Name(NAME_PREFIX + "Stall")
+  @Label("Backup Stall")
+  @Category({CATEGORY_AOSERV, CATEGORY_BACKUP})
+  @Enabled(false)
+  @StackTrace(false)
+  @Threshold("10 ms")
+  static final class StallEvent extends Event {
+
+    static final EventType TYPE = EventType.getEventType(StallEvent.class);
+
+    @Label("Replication")
+    int replication;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Phase Time")
+    @Description("The time attributed to the phase, excluding nested phases")
+    @Timespan(Timespan.NANOSECONDS)
+    long phaseNanos;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+  }
+}
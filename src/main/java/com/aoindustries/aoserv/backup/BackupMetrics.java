@@ -0,0 +1,316 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of all replications run by one {@link BackupDaemon}.
+ *
+ * <p>The metrics of each replication are registered over JMX and may be written in the Prometheus text
+ * exposition format, either on demand or to {@link #PROMETHEUS_FILENAME} in the state directory of the
+ * environment after each pass.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class BackupMetrics {
+
+  /**
+   * The name of the Prometheus text file, suitable for the node exporter textfile collector.
+   */
+  static final String PROMETHEUS_FILENAME = "aoserv-backup.prom";
+
+  private static final String JMX_DOMAIN = "com.aoindustries.aoserv.backup";
+
+  private static final double NANOS_PER_SECOND = 1000000000.0;
+
+  private static final double MILLIS_PER_SECOND = 1000.0;
+
+  private final Logger logger;
+
+  /**
+   * The metrics, by replication ID.
+   */
+  private final Map<Integer, ReplicationMetrics> replications = new TreeMap<>();
+
+  /**
+   * The replications registered over JMX by this instance.  Another daemon in the same JVM may have registered
+   * a replication first, and only the instance that registered it unregisters it.
+   */
+  private final Set<Integer> jmxRegistered = new HashSet<>();
+
+  /**
+   * Serializes writes of the Prometheus text file, which every replication thread writes through the same
+   * temporary file.  Separate from the registry lock so registrations do not wait on the file system.
+   */
+  private final Object prometheusFileLock = new Object();
+
+  BackupMetrics(Logger logger) {
+    this.logger = logger;
+  }
+
+  private static ObjectName getObjectName(int replication) throws JMException {
+    return new ObjectName(JMX_DOMAIN + ":type=FileReplication,name=" + replication);
+  }
+
+  /**
+   * Gets the metrics for the given replication, registering over JMX when first created.
+   */
+  synchronized ReplicationMetrics register(int replication) {
+    ReplicationMetrics metrics = replications.get(replication);
+    if (metrics == null) {
+      metrics = new ReplicationMetrics(replication);
+      replications.put(replication, metrics);
+      try {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = getObjectName(replication);
+        if (!server.isRegistered(name)) {
+          server.registerMBean(metrics, name);
+          jmxRegistered.add(replication);
+        }
+      } catch (InstanceAlreadyExistsException e) {
+        // Registered by another daemon since checked
+      } catch (JMException | SecurityException e) {
+        logger.logp(Level.WARNING, BackupMetrics.class.getName(), "register", "Unable to register over JMX", e);
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Removes the metrics for the given replication.
+   */
+  synchronized void unregister(int replication) {
+    if (replications.remove(replication) != null && jmxRegistered.remove(replication)) {
+      try {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = getObjectName(replication);
+        if (server.isRegistered(name)) {
+          server.unregisterMBean(name);
+        }
+      } catch (JMException | SecurityException e) {
+        logger.logp(Level.WARNING, BackupMetrics.class.getName(), "unregister", "Unable to unregister from JMX", e);
+      }
+    }
+  }
+
+  /**
+   * Removes the metrics for all replications.
+   */
+  synchronized void unregisterAll() {
+    for (Integer replication : new ArrayList<>(replications.keySet())) {
+      unregister(replication);
+    }
+  }
+
+  /**
+   * Gets the progress of the pass running for the given replication.
+   *
+   * @return  the progress or {@code null} when no pass is running
+   */
+  BackupProgress getProgress(int replication) {
+    ReplicationMetrics replicationMetrics;
+    synchronized (this) {
+      replicationMetrics = replications.get(replication);
+    }
+    return replicationMetrics == null ? null : replicationMetrics.getProgress();
+  }
+
+  private synchronized List<ReplicationMetrics.Snapshot> getSnapshots() {
+    List<ReplicationMetrics.Snapshot> snapshots = new ArrayList<>(replications.size());
+    for (ReplicationMetrics metrics : replications.values()) {
+      snapshots.add(metrics.getSnapshot());
+    }
+    return snapshots;
+  }
+
+  private static void writeHeader(Appendable out, String name, String type, String help) throws IOException {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void writeSample(Appendable out, String name, int replication, String extraLabels, double value) throws IOException {
+    out.append(name).append("{replication=\"").append(Integer.toString(replication)).append('"');
+    if (extraLabels != null) {
+      out.append(',').append(extraLabels);
+    }
+    out.append("} ");
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      out.append(Long.toString((long) value));
+    } else {
+      out.append(Double.toString(value));
+    }
+    out.append('\n');
+  }
+
+  /**
+   * Writes one metric family for every replication having the given pass.
+   */
+  private static void writePassFamily(
+      Appendable out,
+      List<ReplicationMetrics.Snapshot> snapshots,
+      boolean current,
+      String name,
+      String type,
+      String help,
+      ToDoubleFunction<PassMetrics> value
+  ) throws IOException {
+    boolean headerDone = false;
+    for (ReplicationMetrics.Snapshot snapshot : snapshots) {
+      PassMetrics pass = current ? snapshot.current : snapshot.last;
+      if (pass != null) {
+        if (!headerDone) {
+          writeHeader(out, name, type, help);
+          headerDone = true;
+        }
+        writeSample(out, name, snapshot.replication, null, value.applyAsDouble(pass));
+      }
+    }
+  }
+
+  /**
+   * Writes one counter family as the sum of all completed passes plus the pass in progress.
+   */
+  private static void writeTotalFamily(
+      Appendable out,
+      List<ReplicationMetrics.Snapshot> snapshots,
+      String name,
+      String help,
+      ToDoubleFunction<PassMetrics> value
+  ) throws IOException {
+    writeHeader(out, name, "counter", help);
+    for (ReplicationMetrics.Snapshot snapshot : snapshots) {
+      double total = value.applyAsDouble(snapshot.totals);
+      if (snapshot.current != null) {
+        total += value.applyAsDouble(snapshot.current);
+      }
+      writeSample(out, name, snapshot.replication, null, total);
+    }
+  }
+
+  /**
+   * Writes the metrics of all replications in the Prometheus text exposition format.
+   */
+  void writePrometheus(Appendable out) throws IOException {
+    final long now = System.currentTimeMillis();
+    List<ReplicationMetrics.Snapshot> snapshots = getSnapshots();
+    if (snapshots.isEmpty()) {
+      return;
+    }
+    // Passes
+    writeHeader(out, "aoserv_backup_pass_in_progress", "gauge", "Whether a backup pass is currently running.");
+    for (ReplicationMetrics.Snapshot snapshot : snapshots) {
+      writeSample(out, "aoserv_backup_pass_in_progress", snapshot.replication, null, snapshot.current == null ? 0 : 1);
+    }
+    writeHeader(out, "aoserv_backup_passes_total", "counter", "The number of backup passes completed since the process started.");
+    for (ReplicationMetrics.Snapshot snapshot : snapshots) {
+      writeSample(out, "aoserv_backup_passes_total", snapshot.replication, "result=\"success\"", snapshot.passes - snapshot.failedPasses);
+      writeSample(out, "aoserv_backup_passes_total", snapshot.replication, "result=\"failure\"", snapshot.failedPasses);
+    }
+    // Pass in progress
+    writePassFamily(out, snapshots, true, "aoserv_backup_current_pass_start_timestamp_seconds", "gauge",
+        "The start time of the pass in progress.", pass -> pass.startTime / MILLIS_PER_SECOND);
+    writePassFamily(out, snapshots, true, "aoserv_backup_current_pass_duration_seconds", "gauge",
+        "The time elapsed in the pass in progress.", pass -> pass.getDuration(now) / MILLIS_PER_SECOND);
+    writePassFamily(out, snapshots, true, "aoserv_backup_current_pass_scanned", "gauge",
+        "The number of files scanned by the pass in progress.", pass -> pass.scanned);
+    writePassFamily(out, snapshots, true, "aoserv_backup_current_pass_updated", "gauge",
+        "The number of files updated by the pass in progress.", pass -> pass.updated);
+    writePassFamily(out, snapshots, true, "aoserv_backup_current_pass_bytes", "gauge",
+        "The number of bytes sent and received by the pass in progress.", pass -> pass.bytesOut + pass.bytesIn);
+    // Last completed pass
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_start_timestamp_seconds", "gauge",
+        "The start time of the last completed pass.", pass -> pass.startTime / MILLIS_PER_SECOND);
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_end_timestamp_seconds", "gauge",
+        "The end time of the last completed pass.", pass -> pass.endTime / MILLIS_PER_SECOND);
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_success", "gauge",
+        "Whether the last completed pass was successful.", pass -> pass.successful ? 1 : 0);
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_duration_seconds", "gauge",
+        "The duration of the last completed pass.", pass -> pass.getDuration(now) / MILLIS_PER_SECOND);
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_scanned", "gauge",
+        "The number of files scanned by the last completed pass.", pass -> pass.scanned);
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_updated", "gauge",
+        "The number of files updated by the last completed pass.", pass -> pass.updated);
+    writePassFamily(out, snapshots, false, "aoserv_backup_last_pass_bytes", "gauge",
+        "The number of bytes sent and received by the last completed pass.", pass -> pass.bytesOut + pass.bytesIn);
+    // Totals
+    writeTotalFamily(out, snapshots, "aoserv_backup_scanned_total", "The number of files scanned.", pass -> pass.scanned);
+    writeTotalFamily(out, snapshots, "aoserv_backup_directories_total", "The number of directories scanned.", pass -> pass.directories);
+    writeTotalFamily(out, snapshots, "aoserv_backup_updated_total", "The number of files updated.", pass -> pass.updated);
+    writeTotalFamily(out, snapshots, "aoserv_backup_batches_total", "The number of batches sent.", pass -> pass.batches);
+    writeTotalFamily(out, snapshots, "aoserv_backup_sent_bytes_total", "The number of bytes sent to the daemon.", pass -> pass.bytesOut);
+    writeTotalFamily(out, snapshots, "aoserv_backup_received_bytes_total", "The number of bytes received from the daemon.", pass -> pass.bytesIn);
+    writeTotalFamily(out, snapshots, "aoserv_backup_files_sent_total", "The number of files with contents sent.", pass -> pass.filesSent);
+    writeTotalFamily(out, snapshots, "aoserv_backup_chunks_sent_total", "The number of chunks sent in chunked transfers.", pass -> pass.chunksSent);
+    writeTotalFamily(out, snapshots, "aoserv_backup_chunks_matched_total", "The number of chunks matched in chunked transfers.", pass -> pass.chunksMatched);
+    // Phases
+    writeHeader(out, "aoserv_backup_phase_seconds_total", "counter", "The time spent in each phase of backup passes.");
+    for (ReplicationMetrics.Snapshot snapshot : snapshots) {
+      for (BackupPhase phase : BackupPhase.getValues()) {
+        long nanos = snapshot.totals.getNanos(phase);
+        if (snapshot.current != null) {
+          nanos += snapshot.current.getNanos(phase);
+        }
+        writeSample(out, "aoserv_backup_phase_seconds_total", snapshot.replication,
+            "phase=\"" + phase.name().toLowerCase(Locale.ROOT) + '"', nanos / NANOS_PER_SECOND);
+      }
+    }
+  }
+
+  /**
+   * Writes the Prometheus text file into the given directory, replacing any previous file atomically.
+   * Called by every replication thread as its pass ends, one at a time.
+   */
+  void writePrometheusFile(File directory) throws IOException {
+    File file = new File(directory, PROMETHEUS_FILENAME);
+    File tempFile = new File(directory, PROMETHEUS_FILENAME + ".new");
+    synchronized (prometheusFileLock) {
+      try (Writer out = new OutputStreamWriter(Files.newOutputStream(tempFile.toPath()), StandardCharsets.UTF_8)) {
+        writePrometheus(out);
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+/**
+ * The phases of a backup pass that are timed by {@link ReplicationMetrics}.
+ *
+ * <p>{@link #THROTTLE} and {@link #NETWORK} are measured below the compression layer and overlap the time
+ * of the phases that write to the daemon: {@link #ENCODE}, {@link #WAIT} and {@link #SEND}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public enum BackupPhase {
+
+  /**
+   * Walking the filesystem, including directory listings.
+   */
+  SCAN,
+
+  /**
+   * Collecting the metadata of each file from the environment.
+   */
+  STAT,
+
+  /**
+   * Encoding the metadata of each file into the batch.
+   */
+  ENCODE,
+
+  /**
+   * Sending each batch and waiting for the results from the daemon.
+   */
+  WAIT,
+
+  /**
+   * Reading file contents.
+   */
+  READ,
+
+  /**
+   * Computing the digests of chunks.
+   */
+  HASH,
+
+  /**
+   * Writing file contents to the outgoing stream, including compression.
+   */
+  SEND,
+
+  /**
+   * Blocked by the bit rate limit.
+   */
+  THROTTLE,
+
+  /**
+   * Writing to the daemon connection.
+   */
+  NETWORK;
+
+  private static final BackupPhase[] values = values();
+
+  /**
+   * Gets all the phases without copying the array.  The returned array must not be modified.
+   */
+  static BackupPhase[] getValues() {
+    return values;
+  }
+}
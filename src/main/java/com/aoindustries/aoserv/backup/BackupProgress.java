@@ -0,0 +1,166 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+/**
+ * The progress of a running backup pass, as of the last completed batch.
+ *
+ * @see  BackupDaemon#getProgress(com.aoindustries.aoserv.client.backup.FileReplication)
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class BackupProgress {
+
+  private final int replication;
+  private final long startTime;
+  private final long time;
+  private final String currentPath;
+  private final long scanned;
+  private final long bytes;
+  private final long previousScanned;
+  private final long previousDuration;
+
+  BackupProgress(int replication, PassMetrics pass, long time, long previousScanned, long previousDuration) {
+    this.replication = replication;
+    this.startTime = pass.startTime;
+    this.time = time;
+    this.currentPath = pass.currentPath;
+    this.scanned = pass.scanned;
+    this.bytes = pass.bytesOut + pass.bytesIn;
+    this.previousScanned = previousScanned;
+    this.previousDuration = previousDuration;
+  }
+
+  @Override
+  public String toString() {
+    long remaining = getEstimatedRemainingMillis();
+    return "replication=" + replication
+        + ", currentPath=" + currentPath
+        + ", scanned=" + scanned
+        + ", filesPerSecond=" + getFilesPerSecond()
+        + ", bytesPerSecond=" + getBytesPerSecond()
+        + ", estimatedRemainingMillis=" + (remaining == -1 ? "unknown" : Long.toString(remaining));
+  }
+
+  /**
+   * Gets the ID of the replication.
+   */
+  public int getReplication() {
+    return replication;
+  }
+
+  /**
+   * Gets the time the pass started.
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the time this progress was captured.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Gets the time elapsed since the pass started.
+   */
+  public long getElapsedMillis() {
+    return Math.max(0, time - startTime);
+  }
+
+  /**
+   * Gets the last path scanned, or {@code null} when no path scanned yet.
+   */
+  public String getCurrentPath() {
+    return currentPath;
+  }
+
+  /**
+   * Gets the number of files scanned so far.
+   */
+  public long getScanned() {
+    return scanned;
+  }
+
+  /**
+   * Gets the number of bytes sent and received so far.
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Gets the average number of files scanned per second.
+   */
+  public double getFilesPerSecond() {
+    long elapsed = getElapsedMillis();
+    return elapsed == 0 ? 0 : (scanned * 1000.0 / elapsed);
+  }
+
+  /**
+   * Gets the average number of bytes sent and received per second.
+   */
+  public double getBytesPerSecond() {
+    long elapsed = getElapsedMillis();
+    return elapsed == 0 ? 0 : (bytes * 1000.0 / elapsed);
+  }
+
+  /**
+   * Gets the number of files scanned by the previous successful pass, or <code>-1</code> when unknown.
+   */
+  public long getPreviousScanned() {
+    return previousScanned;
+  }
+
+  /**
+   * Gets the duration of the previous successful pass, or <code>-1</code> when unknown.
+   */
+  public long getPreviousDuration() {
+    return previousDuration;
+  }
+
+  /**
+   * Gets the estimated time remaining, based on the number of files scanned by the previous successful pass.
+   * The files remaining are estimated at the current scanning rate.  Before any file has been scanned, the
+   * duration of the previous successful pass is used.
+   *
+   * @return  the estimated milliseconds remaining or <code>-1</code> when unknown, such as when there is no
+   *          previous successful pass or when more files have been scanned than by the previous pass
+   */
+  public long getEstimatedRemainingMillis() {
+    if (previousScanned < 0 || previousDuration < 0) {
+      return -1;
+    }
+    long elapsed = getElapsedMillis();
+    if (scanned == 0) {
+      return Math.max(0, previousDuration - elapsed);
+    }
+    if (scanned > previousScanned) {
+      return -1;
+    }
+    return Math.round((double) (previousScanned - scanned) * elapsed / scanned);
+  }
+}
@@ -0,0 +1,328 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Bit rates that depend on the time of day and the day of the week, evaluated locally while a pass runs.
+ *
+ * <p>A profile is parsed from text with one setting per line.  Blank lines and anything after {@code #} are
+ * ignored:</p>
+ *
+ * <pre>
+ * zone America/Chicago
+ * ramp 300
+ * weekdays 08:00-18:00 2000000
+ * weekends 00:00-24:00 unlimited
+ * mon,tue,wed,thu,fri 22:00-06:00 unlimited
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code zone} - the time zone of the windows, defaults to the system time zone</li>
+ *   <li>{@code ramp} - the seconds over which the rate moves from one window to the next, defaults to
+ *       {@link #DEFAULT_RAMP} and is at most {@link #MAX_RAMP}</li>
+ *   <li>a window - the days, the local start and end time, and the bit rate in bits per second or
+ *       {@code unlimited}.  The days are {@code all}, {@code weekdays}, {@code weekends}, or a comma-separated
+ *       list of {@code mon} through {@code sun}.  A window that ends before it starts continues past midnight
+ *       into the next day.</li>
+ * </ul>
+ *
+ * <p>When windows overlap, the first listed is used.  Outside every window, the bit rate configured for the
+ * replication on the master is used.</p>
+ *
+ * <p>The rate changes linearly over the ramp following each boundary, being the average rate of the ramp
+ * period that precedes the current time.  Unlimited time does not have a rate to average, so the rate only
+ * becomes unlimited once the entire ramp period is unlimited.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class BitRateProfile {
+
+  /**
+   * The default number of seconds over which the rate changes at a window boundary.
+   */
+  public static final int DEFAULT_RAMP = 300;
+
+  /**
+   * The maximum number of seconds over which the rate changes at a window boundary.
+   */
+  public static final int MAX_RAMP = 60 * 60;
+
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+  private static final long MILLIS_PER_MINUTE = 60L * 1000;
+
+  /**
+   * Marks a minute not covered by any window.
+   */
+  private static final long FALLBACK = -1;
+
+  /**
+   * Marks a minute with no limit.
+   */
+  private static final long UNLIMITED = -2;
+
+  private static final String[] DAY_NAMES = {"mon", "tue", "wed", "thu", "fri", "sat", "sun"};
+
+  private static final String FILENAME_PREFIX = "bit-rate-profile-";
+  private static final String FILENAME_SUFFIX = ".txt";
+
+  /**
+   * Gets the profile file for the given replication.
+   */
+  public static File getFile(File configurationDirectory, int replication) {
+    return new File(configurationDirectory, FILENAME_PREFIX + replication + FILENAME_SUFFIX);
+  }
+
+  /**
+   * Reads a profile from a file.
+   *
+   * @return  the profile or {@code null} when the file does not exist
+   *
+   * @throws  IOException  when unable to read or parse the file
+   */
+  public static BitRateProfile read(File file) throws IOException {
+    String text;
+    try {
+      text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    try {
+      return parse(text);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid bit rate profile: " + file, e);
+    }
+  }
+
+  /**
+   * Parses a profile.
+   *
+   * @throws  IllegalArgumentException  when the text is not a valid profile
+   */
+  public static BitRateProfile parse(String text) throws IllegalArgumentException {
+    ZoneId zone = ZoneId.systemDefault();
+    int ramp = DEFAULT_RAMP;
+    long[] minuteRates = new long[MINUTES_PER_WEEK];
+    Arrays.fill(minuteRates, FALLBACK);
+    int lineNum = 0;
+    for (String line : text.split("\r?\n", -1)) {
+      lineNum++;
+      int commentPos = line.indexOf('#');
+      if (commentPos != -1) {
+        line = line.substring(0, commentPos);
+      }
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      try {
+        if ("zone".equals(fields[0])) {
+          checkFieldCount(fields, 2);
+          try {
+            zone = ZoneId.of(fields[1]);
+          } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid zone: " + fields[1], e);
+          }
+        } else if ("ramp".equals(fields[0])) {
+          checkFieldCount(fields, 2);
+          ramp = parseNumber(fields[1], "ramp");
+          if (ramp < 0 || ramp > MAX_RAMP) {
+            throw new IllegalArgumentException("ramp out of range 0 to " + MAX_RAMP + ": " + ramp);
+          }
+        } else {
+          checkFieldCount(fields, 3);
+          boolean[] days = parseDays(fields[0]);
+          int dash = fields[1].indexOf('-');
+          if (dash == -1) {
+            throw new IllegalArgumentException("Time range expected: " + fields[1]);
+          }
+          int start = parseTime(fields[1].substring(0, dash));
+          int end = parseTime(fields[1].substring(dash + 1));
+          if (start == MINUTES_PER_DAY) {
+            throw new IllegalArgumentException("Window may not start at 24:00");
+          }
+          long rate;
+          if ("unlimited".equals(fields[2])) {
+            rate = UNLIMITED;
+          } else {
+            try {
+              rate = Long.parseLong(fields[2]);
+            } catch (NumberFormatException e) {
+              throw new IllegalArgumentException("Invalid rate: " + fields[2], e);
+            }
+            if (rate <= 0) {
+              throw new IllegalArgumentException("rate <= 0: " + rate);
+            }
+          }
+          int length = end > start ? (end - start) : (end + MINUTES_PER_DAY - start);
+          for (int day = 0; day < days.length; day++) {
+            if (days[day]) {
+              int first = day * MINUTES_PER_DAY + start;
+              for (int i = 0; i < length; i++) {
+                int minute = (first + i) % MINUTES_PER_WEEK;
+                // The first window listed takes precedence
+                if (minuteRates[minute] == FALLBACK) {
+                  minuteRates[minute] = rate;
+                }
+              }
+            }
+          }
+        }
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + lineNum + ": " + e.getMessage(), e);
+      }
+    }
+    return new BitRateProfile(zone, ramp, minuteRates);
+  }
+
+  private static void checkFieldCount(String[] fields, int expected) throws IllegalArgumentException {
+    if (fields.length != expected) {
+      throw new IllegalArgumentException("Expected " + expected + " fields, got " + fields.length);
+    }
+  }
+
+  private static int parseNumber(String value, String name) throws IllegalArgumentException {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid " + name + ": " + value, e);
+    }
+  }
+
+  /**
+   * Parses the days of a window, indexed from Monday.
+   */
+  private static boolean[] parseDays(String value) throws IllegalArgumentException {
+    boolean[] days = new boolean[DAY_NAMES.length];
+    switch (value.toLowerCase(Locale.ROOT)) {
+      case "all":
+        Arrays.fill(days, true);
+        break;
+      case "weekdays":
+        Arrays.fill(days, 0, 5, true);
+        break;
+      case "weekends":
+        Arrays.fill(days, 5, 7, true);
+        break;
+      default:
+        for (String name : value.toLowerCase(Locale.ROOT).split(",", -1)) {
+          int index = Arrays.asList(DAY_NAMES).indexOf(name);
+          if (index == -1) {
+            throw new IllegalArgumentException("Invalid day: " + name);
+          }
+          days[index] = true;
+        }
+    }
+    return days;
+  }
+
+  /**
+   * Parses a time of day as minutes since midnight, allowing 24:00 as the end of the day.
+   */
+  private static int parseTime(String value) throws IllegalArgumentException {
+    int colon = value.indexOf(':');
+    if (colon == -1) {
+      throw new IllegalArgumentException("Time expected as HH:MM: " + value);
+    }
+    int hour = parseNumber(value.substring(0, colon), "hour");
+    int minute = parseNumber(value.substring(colon + 1), "minute");
+    if (hour < 0 || minute < 0 || minute > 59 || (hour * 60 + minute) > MINUTES_PER_DAY) {
+      throw new IllegalArgumentException("Time out of range: " + value);
+    }
+    return hour * 60 + minute;
+  }
+
+  private final ZoneRules zoneRules;
+  private final long rampMillis;
+  private final long[] minuteRates;
+
+  private BitRateProfile(ZoneId zone, int ramp, long[] minuteRates) {
+    this.zoneRules = zone.getRules();
+    this.rampMillis = ramp * 1000L;
+    this.minuteRates = minuteRates;
+  }
+
+  /**
+   * Gets the minute of the week, starting from Monday, in the time zone of the profile.
+   */
+  private int getMinuteOfWeek(long time) {
+    long localMillis = time + zoneRules.getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+    long localMinutes = Math.floorDiv(localMillis, MILLIS_PER_MINUTE);
+    // 1970-01-01 was a Thursday
+    long dayOfWeek = Math.floorMod(Math.floorDiv(localMinutes, MINUTES_PER_DAY) + 3, 7);
+    return (int) (dayOfWeek * MINUTES_PER_DAY + Math.floorMod(localMinutes, MINUTES_PER_DAY));
+  }
+
+  /**
+   * Gets the bit rate in effect at the given time.
+   *
+   * @param  time      the time in milliseconds since the epoch
+   * @param  fallback  the bit rate outside every window, {@code null} for unlimited
+   *
+   * @return  the bit rate or {@code null} for unlimited
+   */
+  public Long getBitRate(long time, Long fallback) {
+    if (rampMillis == 0) {
+      long rate = minuteRates[getMinuteOfWeek(time)];
+      if (rate == FALLBACK) {
+        return fallback;
+      }
+      return rate == UNLIMITED ? null : rate;
+    }
+    // Average the limited rates over the ramp period, one minute at a time
+    double limitedBits = 0;
+    long limitedMillis = 0;
+    long segmentStart = time - rampMillis;
+    while (segmentStart < time) {
+      long segmentEnd = Math.min(time, Math.floorDiv(segmentStart, MILLIS_PER_MINUTE) * MILLIS_PER_MINUTE + MILLIS_PER_MINUTE);
+      long rate = minuteRates[getMinuteOfWeek(segmentStart)];
+      if (rate == FALLBACK) {
+        rate = fallback == null ? UNLIMITED : fallback;
+      }
+      if (rate != UNLIMITED) {
+        long segmentMillis = segmentEnd - segmentStart;
+        limitedBits += (double) rate * segmentMillis;
+        limitedMillis += segmentMillis;
+      }
+      segmentStart = segmentEnd;
+    }
+    if (limitedMillis == 0) {
+      return null;
+    }
+    return Math.max(1, Math.round(limitedBits / limitedMillis));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.hodgepodge.md5.MD5;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Computes the 128-bit digest of a chunk for comparison with the digests sent by the daemon.
+ *
+ * <p>The result is stored in {@link #getHi()} and {@link #getLo()} so that no array is allocated per chunk.
+ * Instances are not thread-safe and are reused for every chunk of a backup pass.</p>
+ *
+ * <p>Chunks consisting entirely of zeros, such as the holes of sparse files, are detected with a vectorized
+ * comparison and use a cached digest instead of being hashed.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+abstract class ChunkDigest {
+
+  /**
+   * The digest algorithms that may be used to compare chunks.
+   */
+  enum Algorithm {
+    /**
+     * Supported by all daemons.
+     */
+    MD5 {
+      @Override
+      ChunkDigest newInstance() {
+        return new Md5ChunkDigest();
+      }
+    };
+
+    /**
+     * Creates a new digest for this algorithm.
+     */
+    abstract ChunkDigest newInstance();
+  }
+
+  private static final byte[] ZEROS = new byte[64 * 1024];
+
+  /**
+   * Checks if the given range consists entirely of zeros.
+   */
+  static boolean isZeros(byte[] buff, int off, int len) {
+    while (len > 0) {
+      int count = Math.min(len, ZEROS.length);
+      if (Arrays.mismatch(buff, off, off + count, ZEROS, 0, count) != -1) {
+        return false;
+      }
+      off += count;
+      len -= count;
+    }
+    return true;
+  }
+
+  long hi;
+  long lo;
+
+  private int zerosLen = -1;
+  private long zerosHi;
+  private long zerosLo;
+
+  /**
+   * Computes the digest of the given chunk.
+   */
+  final void digest(byte[] chunk, int off, int len) {
+    if (isZeros(chunk, off, len)) {
+      if (len != zerosLen) {
+        byte[] zeros = new byte[len];
+        digestBytes(zeros, 0, len);
+        zerosLen = len;
+        zerosHi = hi;
+        zerosLo = lo;
+      } else {
+        hi = zerosHi;
+        lo = zerosLo;
+      }
+    } else {
+      digestBytes(chunk, off, len);
+    }
+  }
+
+  /**
+   * Computes the digest of the given bytes into {@link #hi} and {@link #lo}.
+   */
+  abstract void digestBytes(byte[] chunk, int off, int len);
+
+  /**
+   * Gets the high-order 64 bits of the last digest.
+   */
+  final long getHi() {
+    return hi;
+  }
+
+  /**
+   * Gets the low-order 64 bits of the last digest.
+   */
+  final long getLo() {
+    return lo;
+  }
+
+  /**
+   * Checks if the last digest matches the given value.
+   */
+  final boolean matches(long expectedHi, long expectedLo) {
+    return hi == expectedHi && lo == expectedLo;
+  }
+
+  /**
+   * Uses the platform MD5, which is intrinsified on current JVMs, writing into a reused buffer.
+   * The high and low values are split exactly as {@link MD5#getMD5Hi(byte[])} and
+   * {@link MD5#getMD5Lo(byte[])}.
+   */
+  private static final class Md5ChunkDigest extends ChunkDigest {
+
+    private static final int MD5_LENGTH = 16;
+
+    private final MessageDigest md5;
+    private final byte[] result = new byte[MD5_LENGTH];
+
+    private Md5ChunkDigest() {
+      try {
+        md5 = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new AssertionError("MD5 is a required MessageDigest algorithm", e);
+      }
+    }
+
+    @Override
+    void digestBytes(byte[] chunk, int off, int len) {
+      md5.update(chunk, off, len);
+      try {
+        int digested = md5.digest(result, 0, MD5_LENGTH);
+        assert digested == MD5_LENGTH;
+      } catch (DigestException e) {
+        throw new AssertionError(e);
+      }
+      hi = MD5.getMD5Hi(result);
+      lo = MD5.getMD5Lo(result);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.lang.math.SafeMath;
+import com.aoindustries.aoserv.daemon.client.AoservDaemonProtocol;
+
+/**
+ * Chunk arithmetic for the chunked transfer of modified files.
+ *
+ * <p>Every file is chunked at {@link AoservDaemonProtocol#FAILOVER_FILE_REPLICATION_CHUNK_SIZE}, since the
+ * {@link AoservDaemonProtocol#FAILOVER_FILE_REPLICATION_MODIFIED_REQUEST_DATA_CHUNKED} response does not carry a
+ * chunk size.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ChunkSizing {
+
+  /** Make no instances. */
+  private ChunkSizing() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Gets the number of chunks for the given chunking size.  Only the last chunk may be partial.
+   */
+  static int getNumChunks(long chunkingSize) {
+    long numChunks = chunkingSize >> AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE_BITS;
+    if ((chunkingSize & (AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE - 1)) != 0) {
+      numChunks++;
+    }
+    return SafeMath.castInt(numChunks);
+  }
+
+  /**
+   * Gets the size of the given chunk.  All but the last chunk are full-sized.
+   */
+  static int getChunkSize(long chunkingSize, int chunkNumber, int numChunks) {
+    if (chunkNumber < (numChunks - 1)) {
+      return AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE;
+    }
+    assert chunkNumber == (numChunks - 1);
+    // Last chunk may be partial
+    int chunkSize = SafeMath.castInt(chunkingSize - (((long) chunkNumber) << AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE_BITS));
+    assert chunkSize > 0 && chunkSize <= AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE;
+    return chunkSize;
+  }
+}
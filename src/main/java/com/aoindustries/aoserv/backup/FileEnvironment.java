@@ -1,6 +1,6 @@
 /*
  * aoserv-backup - Backup client for the AOServ Platform.
- * Copyright (C) 2003-2013, 2017, 2018, 2019, 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2003-2013, 2017, 2018, 2019, 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -52,9 +52,37 @@ import java.util.Set;
  */
 public abstract class FileEnvironment implements BackupEnvironment {
 
+  /**
+   * The last file of a replication, since each metadata method is called in turn for the same path.
+   */
+  private static final class LastFile {
+    private final String filename;
+    private final File file;
+
+    private LastFile(String filename) {
+      this.filename = filename;
+      this.file = new File(filename);
+    }
+  }
+
   private final Object fileCacheLock = new Object();
-  private final Map<FileReplication, String> lastFilenames = new HashMap<>();
-  private final Map<FileReplication, File> lastFiles = new HashMap<>();
+  private final Map<FileReplication, LastFile> lastFiles = new HashMap<>();
+
+  /**
+   * The last profile read for a replication, reread when the file changes.
+   */
+  private static final class LoadedProfile {
+    private final long lastModified;
+    private final long length;
+    private BitRateProfile profile;
+
+    private LoadedProfile(long lastModified, long length) {
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+  }
+
+  private final Map<Integer, LoadedProfile> loadedProfiles = new HashMap<>();
 
   /**
    * Gets the file for the given path.
@@ -64,15 +92,12 @@ public abstract class FileEnvironment implements BackupEnvironment {
       throw new AssertionError("filename is null");
     }
     synchronized (fileCacheLock) {
-      File lastFile;
-      if (!filename.equals(lastFilenames.get(ffr))) {
-        lastFile = new File(filename);
+      LastFile lastFile = lastFiles.get(ffr);
+      if (lastFile == null || !lastFile.filename.equals(filename)) {
+        lastFile = new LastFile(filename);
         lastFiles.put(ffr, lastFile);
-        lastFilenames.put(ffr, filename);
-      } else {
-        lastFile = lastFiles.get(ffr);
       }
-      return lastFile;
+      return lastFile.file;
     }
   }
 
@@ -138,6 +163,46 @@ public abstract class FileEnvironment implements BackupEnvironment {
     return 1000;
   }
 
+  /**
+   * Gets the directory of the configuration files edited by hand, such as the
+   * {@link BitRateProfile#getFile(java.io.File, int) bit rate profiles} and
+   * {@link #getFilesystemIteratorExcludePatterns(FileReplication) exclude patterns}, which are only read.
+   * The directory must already exist.  The {@link #getStateDirectory() state directory} by default.
+   *
+   * @return  the directory or {@code null} to not read any configuration files
+   */
+  protected File getConfigurationDirectory() throws IOException {
+    return getStateDirectory();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Reads the profile from {@link BitRateProfile#getFile(java.io.File, int)} in the
+   * {@link #getConfigurationDirectory() configuration directory}, rereading it when it is modified.  An invalid
+   * profile is reported once then ignored until it is modified again.</p>
+   */
+  @Override
+  public BitRateProfile getBitRateProfile(FileReplication ffr) throws IOException, SQLException {
+    File configurationDirectory = getConfigurationDirectory();
+    if (configurationDirectory == null) {
+      return null;
+    }
+    File file = BitRateProfile.getFile(configurationDirectory, ffr.getPkey());
+    long lastModified = file.lastModified();
+    long length = file.length();
+    synchronized (loadedProfiles) {
+      LoadedProfile loaded = loadedProfiles.get(ffr.getPkey());
+      if (loaded == null || loaded.lastModified != lastModified || loaded.length != length) {
+        loaded = new LoadedProfile(lastModified, length);
+        loadedProfiles.put(ffr.getPkey(), loaded);
+        // Remains null when invalid
+        loaded.profile = lastModified == 0 ? null : BitRateProfile.read(file);
+      }
+      return loaded.profile;
+    }
+  }
+
   @Override
   @SuppressWarnings("NoopMethodInAbstractClass")
   public void preBackup(FileReplication ffr) throws IOException, SQLException {
@@ -153,7 +218,6 @@ public abstract class FileEnvironment implements BackupEnvironment {
   @Override
   public void cleanup(FileReplication ffr) throws IOException, SQLException {
     synchronized (fileCacheLock) {
-      lastFilenames.remove(ffr);
       lastFiles.remove(ffr);
     }
   }
@@ -192,6 +256,20 @@ public abstract class FileEnvironment implements BackupEnvironment {
       );
     }
 
+    List<String> excludePatterns = getFilesystemIteratorExcludePatterns(ffr);
+    if (!excludePatterns.isEmpty()) {
+      PathPatternRule patternRule;
+      try {
+        patternRule = new PathPatternRule(excludePatterns);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid exclude pattern", e);
+      }
+      // The patterns are checked first, whichever rule is the most specific for a path
+      filesystemRules.replaceAll((path, rule) -> patternRule.wrap(rule));
+      filesystemPrefixRules.replaceAll((prefix, rule) -> patternRule.wrap(rule));
+      filesystemPrefixRules.putIfAbsent("", patternRule);
+    }
+
     return new FilesystemIterator(filesystemRules, filesystemPrefixRules).getFilenameIterator();
   }
 
@@ -208,6 +286,22 @@ public abstract class FileEnvironment implements BackupEnvironment {
    */
   protected abstract Map<String, FilesystemIteratorRule> getFilesystemIteratorPrefixRules(FileReplication ffr) throws IOException, SQLException;
 
+  /**
+   * Gets the glob patterns of paths excluded from the backup, along with everything below them.  All patterns
+   * are compiled together once per pass and matched as each path is listed, so excluded directories are not
+   * listed.  See {@link PathPatternRule} for the pattern syntax.
+   *
+   * <p>By default, reads the patterns from <code>exclude-patterns-<i>replication</i>.txt</code> in the
+   * {@link #getConfigurationDirectory() configuration directory}, one per line.</p>
+   */
+  protected List<String> getFilesystemIteratorExcludePatterns(FileReplication ffr) throws IOException, SQLException {
+    File configurationDirectory = getConfigurationDirectory();
+    if (configurationDirectory == null) {
+      return Collections.emptyList();
+    }
+    return PathPatternRule.readPatterns(PathPatternRule.getFile(configurationDirectory, ffr.getPkey()));
+  }
+
   @Override
   public InetAddress getDefaultSourceIpAddress() throws IOException, SQLException {
     return InetAddress.UNSPECIFIED_IPV4;
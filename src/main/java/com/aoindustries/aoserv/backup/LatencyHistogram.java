@@ -0,0 +1,112 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+/**
+ * A fixed-size histogram of durations with logarithmic buckets, for percentiles without retaining every sample.
+ *
+ * <p>Each power of two is divided into eight buckets, so a percentile is within 12.5% of the actual value.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * Values below this are counted exactly.
+   */
+  private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+
+  private static final int NUM_BUCKETS = LINEAR_LIMIT + (Long.SIZE - 1 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+  private final long[] counts = new long[NUM_BUCKETS];
+  private long count;
+
+  private static int getBucket(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_LIMIT + (exponent - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Gets the value in the middle of the given bucket.
+   */
+  private static long getValue(int bucket) {
+    if (bucket < LINEAR_LIMIT) {
+      return bucket;
+    }
+    int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + (SUB_BUCKET_BITS + 1);
+    int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+    int shift = exponent - SUB_BUCKET_BITS;
+    long lowerBound = ((long) (SUB_BUCKETS | subBucket)) << shift;
+    return lowerBound + ((1L << shift) >>> 1);
+  }
+
+  /**
+   * Records one duration.  Negative values are counted as zero.
+   */
+  void record(long value) {
+    counts[getBucket(Math.max(0, value))]++;
+    count++;
+  }
+
+  /**
+   * Gets the number of durations recorded.
+   */
+  long getCount() {
+    return count;
+  }
+
+  /**
+   * Gets the approximate value at the given percentile.
+   *
+   * @param  percentile  the percentile, from 0 to 100
+   *
+   * @return  the value or {@code -1} when nothing has been recorded
+   */
+  long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile out of range 0 to 100: " + percentile);
+    }
+    if (count == 0) {
+      return -1;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        return getValue(bucket);
+      }
+    }
+    throw new AssertionError("count does not match buckets");
+  }
+}
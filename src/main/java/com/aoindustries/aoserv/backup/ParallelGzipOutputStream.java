@@ -0,0 +1,276 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a single GZIP stream, compressing independent blocks in parallel and writing them in order.
+ *
+ * <p>Each block is compressed as raw deflate ending in a sync flush, primed with the last 32 KiB of the previous
+ * block as its dictionary.  The concatenation is a valid deflate stream, so the output is read by any
+ * <code>GZIPInputStream</code>, exactly as from a <code>GZIPOutputStream</code> in sync flush mode.</p>
+ *
+ * <p>Compression is performed on the provided executor, which is not shut down by this stream.  At most
+ * <code>maxBlocksInFlight</code> uncompressed blocks are held while awaiting compression or writing.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ParallelGzipOutputStream extends OutputStream {
+
+  /**
+   * The size of each independently compressed block.
+   */
+  static final int BLOCK_SIZE = 128 * 1024;
+
+  /**
+   * The size of the dictionary carried from one block to the next.
+   */
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private static final byte[] HEADER = {
+      (byte) 0x1f, (byte) 0x8b, // Magic number
+      Deflater.DEFLATED, // Compression method
+      0, // Flags
+      0, 0, 0, 0, // Modification time
+      0, // Extra flags
+      0 // Operating system
+  };
+
+  private static final class CompressedBlock {
+    private final byte[] buff;
+    private final int len;
+
+    private CompressedBlock(byte[] buff, int len) {
+      this.buff = buff;
+      this.len = len;
+    }
+  }
+
+  private final OutputStream out;
+  private final ExecutorService executor;
+  private final int level;
+  private final int maxBlocksInFlight;
+  private final Deque<Future<CompressedBlock>> pending = new ArrayDeque<>();
+  private final CRC32 crc = new CRC32();
+  private long totalIn;
+  private byte[] previous;
+  private int previousLen;
+  private byte[] block = new byte[BLOCK_SIZE];
+  private int blockLen;
+  private boolean finished;
+
+  /**
+   * Creates a new parallel GZIP stream, writing the GZIP header immediately.
+   */
+  ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int level, int maxBlocksInFlight) throws IOException {
+    if (maxBlocksInFlight < 1) {
+      throw new IllegalArgumentException("maxBlocksInFlight < 1: " + maxBlocksInFlight);
+    }
+    this.out = out;
+    this.executor = executor;
+    this.level = level;
+    this.maxBlocksInFlight = maxBlocksInFlight;
+    out.write(HEADER);
+  }
+
+  /**
+   * Computes the number of blocks that may be in flight for the given number of threads and memory bound.
+   */
+  static int getMaxBlocksInFlight(int threads, long memory) {
+    long blocks = Math.max(threads, memory / BLOCK_SIZE);
+    return (int) Math.min(blocks, Integer.MAX_VALUE);
+  }
+
+  private void checkNotFinished() throws IOException {
+    if (finished) {
+      throw new IOException("Stream finished");
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkNotFinished();
+    block[blockLen++] = (byte) b;
+    if (blockLen == BLOCK_SIZE) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkNotFinished();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      int count = Math.min(len, BLOCK_SIZE - blockLen);
+      System.arraycopy(b, off, block, blockLen, count);
+      blockLen += count;
+      off += count;
+      len -= count;
+      if (blockLen == BLOCK_SIZE) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * Submits the current block for compression, writing the oldest blocks when too many are in flight.
+   */
+  private void submitBlock() throws IOException {
+    if (blockLen > 0) {
+      final byte[] input = block;
+      final int inputLen = blockLen;
+      final byte[] dictionary = previous;
+      final int dictionaryOff = previousLen - DICTIONARY_SIZE;
+      crc.update(input, 0, inputLen);
+      totalIn += inputLen;
+      while (pending.size() >= maxBlocksInFlight) {
+        writeBlock(pending.removeFirst());
+      }
+      pending.addLast(executor.submit(() -> compress(input, inputLen, dictionary, dictionaryOff)));
+      // A new buffer is used since the submitted block may still be in use as input or dictionary
+      if (inputLen >= DICTIONARY_SIZE) {
+        previous = input;
+        previousLen = inputLen;
+      } else {
+        previous = null;
+        previousLen = 0;
+      }
+      block = new byte[BLOCK_SIZE];
+      blockLen = 0;
+    }
+  }
+
+  private CompressedBlock compress(byte[] input, int inputLen, byte[] dictionary, int dictionaryOff) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary, dictionaryOff, DICTIONARY_SIZE);
+      }
+      deflater.setInput(input, 0, inputLen);
+      byte[] buff = new byte[inputLen + (inputLen >> 3) + 64];
+      int len = 0;
+      while (true) {
+        len += deflater.deflate(buff, len, buff.length - len, Deflater.SYNC_FLUSH);
+        // Must call again with more space when the output buffer is filled
+        if (len < buff.length && deflater.needsInput()) {
+          break;
+        }
+        buff = Arrays.copyOf(buff, buff.length * 2);
+      }
+      return new CompressedBlock(buff, len);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private void writeBlock(Future<CompressedBlock> future) throws IOException {
+    CompressedBlock compressed;
+    try {
+      compressed = future.get();
+    } catch (InterruptedException e) {
+      // Restore the interrupted status
+      Thread.currentThread().interrupt();
+      InterruptedIOException ioErr = new InterruptedIOException();
+      ioErr.initCause(e);
+      throw ioErr;
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    out.write(compressed.buff, 0, compressed.len);
+  }
+
+  private void writePending() throws IOException {
+    submitBlock();
+    while (!pending.isEmpty()) {
+      writeBlock(pending.removeFirst());
+    }
+  }
+
+  /**
+   * Compresses and writes all data written so far, then flushes the wrapped stream.
+   * Like a sync flush, the receiver is able to decompress everything written before the flush.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (!finished) {
+      writePending();
+    }
+    out.flush();
+  }
+
+  /**
+   * Finishes writing the GZIP stream without closing the wrapped stream.
+   */
+  public void finish() throws IOException {
+    if (!finished) {
+      writePending();
+      // Final empty block
+      Deflater deflater = new Deflater(level, true);
+      try {
+        deflater.finish();
+        byte[] buff = new byte[64];
+        while (!deflater.finished()) {
+          int len = deflater.deflate(buff);
+          out.write(buff, 0, len);
+        }
+      } finally {
+        deflater.end();
+      }
+      writeIntLe((int) crc.getValue());
+      writeIntLe((int) totalIn);
+      finished = true;
+    }
+  }
+
+  private void writeIntLe(int i) throws IOException {
+    out.write(i);
+    out.write(i >>> 8);
+    out.write(i >>> 16);
+    out.write(i >>> 24);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      out.close();
+    }
+  }
+}
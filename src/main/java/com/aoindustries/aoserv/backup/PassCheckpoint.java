@@ -0,0 +1,142 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The position of a pass in the filesystem walk up to which the daemon has acknowledged every file, stored in
+ * the state directory of the environment while the pass runs and removed once it completes successfully.
+ *
+ * <p>A checkpoint remaining at the start of a pass shows how far the previous attempt got before it was
+ * interrupted.  Passes are not resumed from the checkpoint: the daemon determines deleted files from the
+ * complete set of paths sent in one pass, and the replication protocol has no way to resume a pass.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PassCheckpoint {
+
+  /**
+   * The minimum time between writes of the checkpoint during a pass, in milliseconds.
+   */
+  static final long WRITE_INTERVAL = 60L * 1000;
+
+  private final long startTime;
+  private final long scanned;
+  private final String path;
+
+  PassCheckpoint(long startTime, long scanned, String path) {
+    this.startTime = startTime;
+    this.scanned = scanned;
+    this.path = path;
+  }
+
+  /**
+   * Gets the checkpoint file for the given replication.
+   */
+  static File getFile(File stateDirectory, int replication) {
+    return new File(stateDirectory, "checkpoint-" + replication + ".txt");
+  }
+
+  /**
+   * Reads a checkpoint.
+   *
+   * @return  the checkpoint or {@code null} when there is none
+   */
+  static PassCheckpoint read(File file) throws IOException {
+    try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String startTimeLine = in.readLine();
+      String scannedLine = in.readLine();
+      // The path is the remainder of the file, since filenames may contain newlines
+      StringBuilder path = new StringBuilder();
+      int ch;
+      while ((ch = in.read()) != -1) {
+        path.append((char) ch);
+      }
+      int pathLength = path.length();
+      if (startTimeLine == null || scannedLine == null || pathLength == 0 || path.charAt(pathLength - 1) != '\n') {
+        throw new IOException("Incomplete checkpoint: " + file);
+      }
+      path.setLength(pathLength - 1);
+      try {
+        return new PassCheckpoint(Long.parseLong(startTimeLine), Long.parseLong(scannedLine), path.toString());
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid checkpoint: " + file, e);
+      }
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes this checkpoint, replacing any previous checkpoint atomically.
+   */
+  void write(File file) throws IOException {
+    File tempFile = new File(file.getPath() + ".new");
+    try (Writer out = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+      out.write(Long.toString(startTime));
+      out.write('\n');
+      out.write(Long.toString(scanned));
+      out.write('\n');
+      out.write(path);
+      out.write('\n');
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Removes a checkpoint, if it exists.
+   */
+  static void delete(File file) throws IOException {
+    Files.deleteIfExists(file.toPath());
+  }
+
+  /**
+   * Gets the time the pass started.
+   */
+  long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * Gets the number of entries acknowledged.
+   */
+  long getScanned() {
+    return scanned;
+  }
+
+  /**
+   * Gets the last path acknowledged, in iterator order.
+   */
+  String getPath() {
+    return path;
+  }
+}
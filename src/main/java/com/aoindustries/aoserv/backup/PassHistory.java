@@ -0,0 +1,498 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.hodgepodge.io.TerminalWriter;
+import com.aoapps.lang.util.ErrorPrinter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A local history of the performance of each backup pass, stored in the state directory of the environment.
+ *
+ * <p>The master only stores the totals of each pass.  This history adds the rates, batch round-trip times and
+ * phase timings needed to find when and where a replication became slower.  Each replication has its own
+ * file of binary records, rewritten atomically on each pass and trimmed to the most recent {@link #MAX_ENTRIES}.</p>
+ *
+ * <p>A successful pass is flagged as a regression when its rate of files per second is below the median of the
+ * trailing {@link #BASELINE_PASSES} successful passes by more than {@link #REGRESSION_FACTOR}.  The rate is used
+ * instead of the duration so that normal growth of the filesystem is not flagged.</p>
+ *
+ * <p>Files are only accessed by the thread of the replication they belong to.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public final class PassHistory {
+
+  /** Make no instances. */
+  private PassHistory() {
+    throw new AssertionError();
+  }
+
+  private static final String FILENAME_PREFIX = "pass-history-";
+  private static final String FILENAME_SUFFIX = ".dat";
+
+  /**
+   * The version of each record, written first so that the format may be extended.
+   */
+  private static final int RECORD_VERSION = 1;
+
+  /**
+   * The maximum number of passes retained for each replication.
+   */
+  public static final int MAX_ENTRIES = 1000;
+
+  /**
+   * The number of trailing successful passes that form the baseline.
+   */
+  public static final int BASELINE_PASSES = 10;
+
+  /**
+   * The minimum number of successful passes before regressions are flagged.
+   */
+  public static final int MIN_BASELINE_PASSES = 3;
+
+  /**
+   * How many times slower than the baseline a pass must be to be flagged.
+   */
+  public static final double REGRESSION_FACTOR = 1.5;
+
+  /**
+   * The performance of one pass.
+   */
+  public static final class Entry {
+
+    private final long startTime;
+    private final long duration;
+    private final boolean successful;
+    private final long scanned;
+    private final long updated;
+    private final long bytes;
+    private final long batches;
+    private final long batchNanos50;
+    private final long batchNanos90;
+    private final long batchNanos99;
+    private final long[] phaseNanos;
+
+    Entry(
+        long startTime,
+        long duration,
+        boolean successful,
+        long scanned,
+        long updated,
+        long bytes,
+        long batches,
+        long batchNanos50,
+        long batchNanos90,
+        long batchNanos99,
+        long[] phaseNanos
+    ) {
+      this.startTime = startTime;
+      this.duration = duration;
+      this.successful = successful;
+      this.scanned = scanned;
+      this.updated = updated;
+      this.bytes = bytes;
+      this.batches = batches;
+      this.batchNanos50 = batchNanos50;
+      this.batchNanos90 = batchNanos90;
+      this.batchNanos99 = batchNanos99;
+      this.phaseNanos = phaseNanos;
+    }
+
+    /**
+     * Creates the entry for a completed pass.
+     */
+    static Entry of(PassMetrics pass, LatencyHistogram batchNanos) {
+      return new Entry(
+          pass.startTime,
+          pass.getDuration(pass.startTime),
+          pass.successful,
+          pass.scanned,
+          pass.updated,
+          pass.bytesOut + pass.bytesIn,
+          pass.batches,
+          batchNanos.getPercentile(50),
+          batchNanos.getPercentile(90),
+          batchNanos.getPercentile(99),
+          Arrays.copyOf(pass.phaseNanos, pass.phaseNanos.length)
+      );
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeInt(RECORD_VERSION);
+      out.writeLong(startTime);
+      out.writeLong(duration);
+      out.writeBoolean(successful);
+      out.writeLong(scanned);
+      out.writeLong(updated);
+      out.writeLong(bytes);
+      out.writeLong(batches);
+      out.writeLong(batchNanos50);
+      out.writeLong(batchNanos90);
+      out.writeLong(batchNanos99);
+      out.writeInt(phaseNanos.length);
+      for (long nanos : phaseNanos) {
+        out.writeLong(nanos);
+      }
+    }
+
+    /**
+     * Reads an entry.
+     *
+     * @return  the entry or {@code null} when the data is not a valid entry
+     */
+    private static Entry read(DataInputStream in) throws IOException {
+      int version = in.readInt();
+      if (version != RECORD_VERSION) {
+        return null;
+      }
+      long startTime = in.readLong();
+      long duration = in.readLong();
+      boolean successful = in.readBoolean();
+      long scanned = in.readLong();
+      long updated = in.readLong();
+      long bytes = in.readLong();
+      long batches = in.readLong();
+      long batchNanos50 = in.readLong();
+      long batchNanos90 = in.readLong();
+      long batchNanos99 = in.readLong();
+      int numPhases = in.readInt();
+      if (numPhases < 0 || numPhases > 256) {
+        return null;
+      }
+      // Phases added after the record was written are zero, phases since removed are ignored
+      long[] phaseNanos = new long[BackupPhase.getValues().length];
+      for (int i = 0; i < numPhases; i++) {
+        long nanos = in.readLong();
+        if (i < phaseNanos.length) {
+          phaseNanos[i] = nanos;
+        }
+      }
+      return new Entry(startTime, duration, successful, scanned, updated, bytes, batches,
+          batchNanos50, batchNanos90, batchNanos99, phaseNanos);
+    }
+
+    /**
+     * Gets the time the pass started.
+     */
+    public long getStartTime() {
+      return startTime;
+    }
+
+    /**
+     * Gets the duration of the pass, in milliseconds.
+     */
+    public long getDuration() {
+      return duration;
+    }
+
+    /**
+     * Checks if the pass was successful.
+     */
+    public boolean isSuccessful() {
+      return successful;
+    }
+
+    /**
+     * Gets the number of files scanned.
+     */
+    public long getScanned() {
+      return scanned;
+    }
+
+    /**
+     * Gets the number of files updated.
+     */
+    public long getUpdated() {
+      return updated;
+    }
+
+    /**
+     * Gets the number of bytes sent and received.
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Gets the number of batches.
+     */
+    public long getBatches() {
+      return batches;
+    }
+
+    /**
+     * Gets the number of files scanned per second.
+     */
+    public double getFilesPerSecond() {
+      return duration <= 0 ? 0 : (scanned * 1000.0 / duration);
+    }
+
+    /**
+     * Gets the number of bytes sent and received per second.
+     */
+    public double getBytesPerSecond() {
+      return duration <= 0 ? 0 : (bytes * 1000.0 / duration);
+    }
+
+    /**
+     * Gets the approximate round-trip time of a batch at the given percentile, in nanoseconds.
+     *
+     * @param  percentile  one of 50, 90, or 99
+     *
+     * @return  the time or {@code -1} when there were no batches
+     */
+    public long getBatchNanos(int percentile) {
+      switch (percentile) {
+        case 50:
+          return batchNanos50;
+        case 90:
+          return batchNanos90;
+        case 99:
+          return batchNanos99;
+        default:
+          throw new IllegalArgumentException("Unsupported percentile: " + percentile);
+      }
+    }
+
+    /**
+     * Gets the number of nanoseconds spent in the given phase.
+     */
+    public long getNanos(BackupPhase phase) {
+      return phaseNanos[phase.ordinal()];
+    }
+  }
+
+  /**
+   * Gets the history file for the given replication.
+   */
+  public static File getFile(File stateDirectory, int replication) {
+    return new File(stateDirectory, FILENAME_PREFIX + replication + FILENAME_SUFFIX);
+  }
+
+  /**
+   * Reads all entries, oldest first.  Reading stops at a partially written or invalid entry, ignoring the rest of
+   * the file, which is then removed by the next {@link #append(File, Entry)}.
+   *
+   * @return  the entries or an empty list when the file does not exist
+   */
+  public static List<Entry> read(File file) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (true) {
+        Entry entry;
+        try {
+          entry = Entry.read(in);
+        } catch (EOFException e) {
+          break;
+        }
+        if (entry == null) {
+          break;
+        }
+        entries.add(entry);
+      }
+    } catch (FileNotFoundException e) {
+      // No history yet
+    }
+    return entries;
+  }
+
+  /**
+   * Replaces the file with the given entries atomically.
+   */
+  private static void write(File file, List<Entry> entries) throws IOException {
+    File tempFile = new File(file.getPath() + ".new");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      for (Entry entry : entries) {
+        entry.write(out);
+      }
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Gets the median files per second of the trailing successful passes.
+   *
+   * @return  the baseline or {@code -1} when there are fewer than {@link #MIN_BASELINE_PASSES}
+   */
+  static double getBaselineFilesPerSecond(List<Entry> entries) {
+    List<Double> rates = new ArrayList<>(BASELINE_PASSES);
+    for (int i = entries.size() - 1; i >= 0 && rates.size() < BASELINE_PASSES; i--) {
+      Entry entry = entries.get(i);
+      if (entry.isSuccessful()) {
+        rates.add(entry.getFilesPerSecond());
+      }
+    }
+    if (rates.size() < MIN_BASELINE_PASSES) {
+      return -1;
+    }
+    Collections.sort(rates);
+    int size = rates.size();
+    return (size & 1) == 1 ? rates.get(size / 2) : ((rates.get(size / 2 - 1) + rates.get(size / 2)) / 2);
+  }
+
+  /**
+   * Appends an entry, trimming the history to {@link #MAX_ENTRIES}.  The file is rewritten through a temporary
+   * file, so an interrupted append never leaves a partial entry.
+   *
+   * @return  a description of the regression or {@code null} when the entry is not a regression
+   */
+  static String append(File file, Entry entry) throws IOException {
+    List<Entry> entries = read(file);
+    String regression = null;
+    if (entry.isSuccessful()) {
+      double baseline = getBaselineFilesPerSecond(entries);
+      double rate = entry.getFilesPerSecond();
+      if (baseline > 0 && rate * REGRESSION_FACTOR < baseline) {
+        regression = String.format(
+            "Pass scanned %.1f files/s, slower than the baseline of %.1f files/s of recent successful passes",
+            rate, baseline);
+      }
+    }
+    if (entries.size() >= MAX_ENTRIES) {
+      // Keep the most recent entries
+      entries = new ArrayList<>(entries.subList(entries.size() - MAX_ENTRIES + 1, entries.size()));
+    }
+    entries.add(entry);
+    write(file, entries);
+    return regression;
+  }
+
+  private static void print(PrintStream out, File file) throws IOException {
+    out.println(file.getName() + ':');
+    StringBuilder header = new StringBuilder(String.format(
+        "%-28s %10s %3s %10s %10s %12s %10s %10s %10s", "Start", "Seconds", "OK", "Scanned", "Files/s", "Bytes/s",
+        "Batch p50", "Batch p90", "Batch p99"));
+    for (BackupPhase phase : BackupPhase.getValues()) {
+      header.append(String.format(" %10s", phase));
+    }
+    out.println(header);
+    List<Entry> entries = read(file);
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      StringBuilder line = new StringBuilder(String.format(
+          "%-28s %10.1f %3s %10d %10.1f %12.0f %10.3f %10.3f %10.3f",
+          new Date(entry.getStartTime()),
+          entry.getDuration() / 1000.0,
+          entry.isSuccessful() ? "Y" : "N",
+          entry.getScanned(),
+          entry.getFilesPerSecond(),
+          entry.getBytesPerSecond(),
+          entry.getBatchNanos(50) / 1000000000.0,
+          entry.getBatchNanos(90) / 1000000000.0,
+          entry.getBatchNanos(99) / 1000000000.0));
+      for (BackupPhase phase : BackupPhase.getValues()) {
+        line.append(String.format(" %10.1f", entry.getNanos(phase) / 1000000000.0));
+      }
+      if (entry.isSuccessful()) {
+        double baseline = getBaselineFilesPerSecond(entries.subList(0, i));
+        if (baseline > 0 && entry.getFilesPerSecond() * REGRESSION_FACTOR < baseline) {
+          line.append(" REGRESSION");
+        }
+      }
+      out.println(line);
+    }
+    out.println();
+  }
+
+  /**
+   * Prints the history of one or all replications in a state directory.
+   */
+  @SuppressWarnings("UseOfSystemOutOrSystemErr")
+  public static void main(String[] args) {
+    if (args.length < 1 || args.length > 2) {
+      try {
+        showUsage();
+        System.exit(1);
+      } catch (IOException err) {
+        ErrorPrinter.printStackTraces(err, System.err);
+        System.exit(5);
+      }
+    } else {
+      try {
+        File stateDirectory = new File(args[0]);
+        if (args.length == 2) {
+          print(System.out, getFile(stateDirectory, Integer.parseInt(args[1])));
+        } else {
+          File[] files = stateDirectory.listFiles(
+              (dir, name) -> name.startsWith(FILENAME_PREFIX) && name.endsWith(FILENAME_SUFFIX));
+          if (files == null) {
+            throw new IOException("Unable to list directory: " + stateDirectory);
+          }
+          Arrays.sort(files);
+          for (File file : files) {
+            print(System.out, file);
+          }
+        }
+      } catch (IOException | NumberFormatException err) {
+        ErrorPrinter.printStackTraces(err, System.err);
+        System.exit(5);
+      }
+    }
+  }
+
+  /**
+   * Shows command line usage.
+   */
+  public static void showUsage() throws IOException {
+    @SuppressWarnings("UseOfSystemOutOrSystemErr")
+    TerminalWriter out = new TerminalWriter(new OutputStreamWriter(System.err));
+    out.println();
+    out.boldOn();
+    out.print("SYNOPSIS");
+    out.attributesOff();
+    out.println();
+    out.println("\t" + PassHistory.class.getName() + " {state_directory} [replication]");
+    out.println();
+    out.boldOn();
+    out.print("DESCRIPTION");
+    out.attributesOff();
+    out.println();
+    out.println("\tPrints the performance of each backup pass, as recorded in the state directory.");
+    out.println("\tTimes are in seconds.  Passes significantly slower than their trailing baseline");
+    out.println("\tare flagged as REGRESSION.");
+    out.println();
+    out.println("\tWhen a replication is provided, only its history is printed.");
+    out.println();
+    out.flush();
+  }
+}
@@ -0,0 +1,337 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoindustries.aoserv.client.backup.FileReplication;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Delivers the log of each pass to the master in the background, so replication threads never wait for the
+ * master to be available.
+ *
+ * <p>When the environment has a state directory, each log is first saved to {@link #FILENAME} and removed
+ * once delivered, so undelivered logs survive a restart of the daemon.  Otherwise, logs are only held in
+ * memory.  A log may be delivered twice if the process ends, or delivery is stopped, between its delivery and
+ * its removal.</p>
+ *
+ * <p>The logs of each replication are delivered in the order added, and a log is never discarded because of a
+ * failure.  Logs are delivered in rounds over all pending logs.  A failed log holds back only the later logs of
+ * its own replication, except an {@link IOException}, taken as the master being unreachable, which ends the
+ * round.  After a round with any failure, the next is delayed with exponential backoff between
+ * {@link #MIN_RETRY_DELAY} and {@link #MAX_RETRY_DELAY}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PassLogOutbox {
+
+  static final String FILENAME = "pass-log-outbox.dat";
+
+  /**
+   * The version of each record, written first so that the format may be extended.
+   */
+  private static final int RECORD_VERSION = 1;
+
+  static final long MIN_RETRY_DELAY = 15L * 1000;
+
+  static final long MAX_RETRY_DELAY = 15L * 60 * 1000;
+
+  /**
+   * The maximum time to wait for delivery to stop, in milliseconds.
+   */
+  private static final long STOP_TIMEOUT = 60L * 1000;
+
+  /**
+   * The log of one pass, as added by {@link FileReplication#addFailoverFileLog(long, long, int, int, long, boolean)}.
+   */
+  static final class Record {
+
+    private final int replication;
+    private final long startTime;
+    private final long endTime;
+    private final int scanned;
+    private final int updated;
+    private final long bytes;
+    private final boolean successful;
+
+    Record(int replication, long startTime, long endTime, int scanned, int updated, long bytes, boolean successful) {
+      this.replication = replication;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.scanned = scanned;
+      this.updated = updated;
+      this.bytes = bytes;
+      this.successful = successful;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeInt(RECORD_VERSION);
+      out.writeInt(replication);
+      out.writeLong(startTime);
+      out.writeLong(endTime);
+      out.writeInt(scanned);
+      out.writeInt(updated);
+      out.writeLong(bytes);
+      out.writeBoolean(successful);
+    }
+
+    /**
+     * Reads a record.
+     *
+     * @return  the record or {@code null} when the data is not a valid record
+     */
+    private static Record read(DataInputStream in) throws IOException {
+      int version = in.readInt();
+      if (version != RECORD_VERSION) {
+        return null;
+      }
+      return new Record(in.readInt(), in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readBoolean());
+    }
+
+    @Override
+    public String toString() {
+      return "replication=" + replication + ", startTime=" + startTime + ", endTime=" + endTime + ", scanned="
+          + scanned + ", updated=" + updated + ", bytes=" + bytes + ", successful=" + successful;
+    }
+  }
+
+  private final BackupEnvironment environment;
+
+  private final Deque<Record> pending = new ArrayDeque<>();
+  private File file;
+  private boolean loaded;
+  private Thread thread;
+
+  PassLogOutbox(BackupEnvironment environment) {
+    this.environment = environment;
+  }
+
+  /**
+   * Loads any logs not delivered before the last restart and starts delivering in the background.
+   * When started again after {@link #stop()}, the logs still pending in memory are used.
+   */
+  synchronized void start() throws IOException {
+    if (thread == null) {
+      File stateDirectory = environment.getStateDirectory();
+      if (stateDirectory != null && !loaded) {
+        loaded = true;
+        file = new File(stateDirectory, FILENAME);
+        List<Record> loaded = load(file);
+        if (!loaded.isEmpty()) {
+          environment.getLogger().logp(Level.INFO, getClass().getName(), "start",
+              "Delivering " + loaded.size() + " pass logs from before restart");
+          // Added before starting, such as by a pass that ended during a restart
+          List<Record> added = new ArrayList<>(pending);
+          pending.clear();
+          pending.addAll(loaded);
+          pending.addAll(added);
+          save();
+        }
+      }
+      thread = new Thread(this::deliver, PassLogOutbox.class.getName());
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops delivering, waiting up to {@link #STOP_TIMEOUT} for a delivery in progress.  Undelivered logs remain in
+   * the outbox file.
+   */
+  void stop() throws InterruptedException {
+    Thread stopping;
+    synchronized (this) {
+      stopping = thread;
+      if (stopping == null) {
+        return;
+      }
+      stopping.interrupt();
+      thread = null;
+      notifyAll();
+    }
+    stopping.join(STOP_TIMEOUT);
+  }
+
+  /**
+   * Adds a log, returning immediately.
+   */
+  synchronized void add(Record record) {
+    pending.addLast(record);
+    if (file != null) {
+      try {
+        save();
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "add", "Pass log only held in memory: " + record, e);
+      }
+    }
+    notifyAll();
+  }
+
+  private static List<Record> load(File file) throws IOException {
+    List<Record> records = new ArrayList<>();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (true) {
+        Record record;
+        try {
+          record = Record.read(in);
+        } catch (EOFException e) {
+          // A partially written final record is ignored
+          break;
+        }
+        if (record == null) {
+          break;
+        }
+        records.add(record);
+      }
+    } catch (FileNotFoundException e) {
+      // Nothing pending
+    }
+    return records;
+  }
+
+  /**
+   * Replaces the outbox file with the logs still pending.
+   */
+  private void save() throws IOException {
+    assert Thread.holdsLock(this);
+    if (pending.isEmpty()) {
+      Files.deleteIfExists(file.toPath());
+    } else {
+      File tempFile = new File(file.getPath() + ".new");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        for (Record record : pending) {
+          record.write(out);
+        }
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  private void send(Record record) throws IOException, SQLException {
+    FileReplication ffr = environment.getConnector().getBackup().getFileReplication().get(record.replication);
+    if (ffr == null) {
+      environment.getLogger().logp(Level.WARNING, getClass().getName(), "send", "Replication removed, discarding pass log: " + record);
+    } else {
+      ffr.addFailoverFileLog(record.startTime, record.endTime, record.scanned, record.updated, record.bytes, record.successful);
+    }
+  }
+
+  /**
+   * Removes a delivered record, unless delivery has been stopped by {@link #stop()}.
+   *
+   * @return  {@code false} when delivery has been stopped
+   */
+  private synchronized boolean remove(Thread currentThread, Record record) {
+    if (currentThread != thread) {
+      // Left for the next delivery thread
+      return false;
+    }
+    boolean removed = pending.removeFirstOccurrence(record);
+    assert removed;
+    if (file != null) {
+      try {
+        save();
+      } catch (IOException e) {
+        environment.getLogger().logp(Level.WARNING, getClass().getName(), "remove", null, e);
+      }
+    }
+    return true;
+  }
+
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  private void deliver() {
+    final Thread currentThread = Thread.currentThread();
+    long retryDelay = MIN_RETRY_DELAY;
+    try {
+      while (true) {
+        List<Record> round;
+        synchronized (this) {
+          while (currentThread == thread && pending.isEmpty()) {
+            wait();
+          }
+          if (currentThread != thread) {
+            return;
+          }
+          round = new ArrayList<>(pending);
+        }
+        long sleepyTime = retryDelay + environment.getFastRandom().nextInt((int) (retryDelay / 2));
+        // The replications with a log not delivered this round, whose later logs wait to keep their order
+        Set<Integer> failed = new HashSet<>();
+        for (Record record : round) {
+          if (failed.contains(record.replication)) {
+            continue;
+          }
+          try {
+            send(record);
+          } catch (Throwable t) {
+            environment.getLogger().logp(Level.SEVERE, getClass().getName(), "deliver",
+                "Error adding failover file log, will retry in " + (sleepyTime / 1000) + " seconds: " + record, t);
+            failed.add(record.replication);
+            if (t instanceof IOException) {
+              // The master is likely unreachable, so the remaining logs wait for the next round
+              break;
+            }
+            continue;
+          }
+          if (!remove(currentThread, record)) {
+            return;
+          }
+        }
+        if (failed.isEmpty()) {
+          retryDelay = MIN_RETRY_DELAY;
+        } else {
+          retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY);
+          synchronized (this) {
+            long wakeTime = System.currentTimeMillis() + sleepyTime;
+            long remaining;
+            while (currentThread == thread && (remaining = wakeTime - System.currentTimeMillis()) > 0) {
+              wait(remaining);
+            }
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      // Stopped
+      currentThread.interrupt();
+    }
+  }
+}
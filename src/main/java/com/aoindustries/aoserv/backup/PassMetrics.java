@@ -0,0 +1,134 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.util.Arrays;
+
+/**
+ * The counters and phase timings of one backup pass.
+ *
+ * <p>Instances are updated only by the thread running the pass, without synchronization.  Other threads see
+ * the copies published to {@link ReplicationMetrics}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PassMetrics {
+
+  final int replication;
+  final long startTime;
+  long endTime = -1;
+  boolean successful;
+  String currentPath;
+  long scanned;
+  long directories;
+  long updated;
+  long batches;
+  long bytesOut;
+  long bytesIn;
+  long filesSent;
+  long chunksSent;
+  long chunksMatched;
+  final long[] phaseNanos;
+
+  PassMetrics(int replication, long startTime) {
+    this.replication = replication;
+    this.startTime = startTime;
+    this.phaseNanos = new long[BackupPhase.getValues().length];
+  }
+
+  private PassMetrics(PassMetrics other) {
+    replication = other.replication;
+    startTime = other.startTime;
+    endTime = other.endTime;
+    successful = other.successful;
+    currentPath = other.currentPath;
+    scanned = other.scanned;
+    directories = other.directories;
+    updated = other.updated;
+    batches = other.batches;
+    bytesOut = other.bytesOut;
+    bytesIn = other.bytesIn;
+    filesSent = other.filesSent;
+    chunksSent = other.chunksSent;
+    chunksMatched = other.chunksMatched;
+    phaseNanos = Arrays.copyOf(other.phaseNanos, other.phaseNanos.length);
+  }
+
+  /**
+   * Gets a copy of these metrics for publishing to other threads.
+   */
+  PassMetrics copy() {
+    return new PassMetrics(this);
+  }
+
+  /**
+   * Adds the counters and timings of another pass to this one.
+   */
+  void add(PassMetrics other) {
+    scanned += other.scanned;
+    directories += other.directories;
+    updated += other.updated;
+    batches += other.batches;
+    bytesOut += other.bytesOut;
+    bytesIn += other.bytesIn;
+    filesSent += other.filesSent;
+    chunksSent += other.chunksSent;
+    chunksMatched += other.chunksMatched;
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i] += other.phaseNanos[i];
+    }
+  }
+
+  /**
+   * Adds the time since <code>startNanos</code> to the given phase.
+   *
+   * @return  the current {@link System#nanoTime()}, which may be used as the start of the next phase
+   */
+  long time(BackupPhase phase, long startNanos) {
+    long now = System.nanoTime();
+    phaseNanos[phase.ordinal()] += now - startNanos;
+    return now;
+  }
+
+  /**
+   * Adds the given number of nanoseconds to the given phase.
+   */
+  void addNanos(BackupPhase phase, long nanos) {
+    phaseNanos[phase.ordinal()] += nanos;
+  }
+
+  /**
+   * Gets the number of nanoseconds spent in the given phase.
+   */
+  long getNanos(BackupPhase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * Gets the duration of the pass, or the time elapsed so far when still running.
+   */
+  long getDuration(long now) {
+    return (endTime == -1 ? now : endTime) - startTime;
+  }
+}
@@ -0,0 +1,466 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.hodgepodge.io.FilesystemIterator;
+import com.aoapps.hodgepodge.io.FilesystemIteratorRule;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Excludes the paths matching any of a set of glob patterns, along with everything below them.
+ *
+ * <ul>
+ *   <li>{@code ?} matches any one character other than {@code /}</li>
+ *   <li>{@code *} matches any number of characters other than {@code /}, as does {@code **} elsewhere</li>
+ *   <li>{@code **}&#47; at the start of a segment matches any number of whole directories</li>
+ *   <li>{@code **} at the end of the pattern matches everything below, but not the directory itself</li>
+ *   <li>A pattern beginning with {@code /} is matched from the root, otherwise it is matched at any depth</li>
+ *   <li>A trailing {@code /} is allowed.  Since the type of the path is not checked, it also matches a file of
+ *       the same name.</li>
+ * </ul>
+ *
+ * <p>For example, {@code **}&#47;{@code node_modules/}, {@code *.tmp}, {@code /home/*}&#47;{@code .cache/}, and
+ * {@code **}&#47;{@code *.sock}.  The path separator of the platform is matched as {@code /}.</p>
+ *
+ * <p>All patterns are compiled into a single nondeterministic automaton.  The deterministic automaton for it is
+ * built as paths are matched, so that each path is matched in one pass without allocation once the states it
+ * needs have been built.</p>
+ *
+ * <p>The {@link FilesystemIterator} uses the most specific rule for each path, so every rule is
+ * {@link #wrap(FilesystemIteratorRule) wrapped} to check the patterns first, and this rule is used for the
+ * empty prefix when there is no other.  A directory that matches is then excluded before it is listed, whichever
+ * rule applies to it.</p>
+ *
+ * <p>This class is not thread-safe.  A new rule is compiled for each filename iterator.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PathPatternRule extends FilesystemIteratorRule {
+
+  private static final String FILENAME_PREFIX = "exclude-patterns-";
+  private static final String FILENAME_SUFFIX = ".txt";
+
+  /**
+   * Gets the patterns file for the given replication.
+   */
+  static File getFile(File configurationDirectory, int replication) {
+    return new File(configurationDirectory, FILENAME_PREFIX + replication + FILENAME_SUFFIX);
+  }
+
+  /**
+   * Reads patterns from a file, one per line.  Blank lines and lines beginning with {@code #} are ignored.
+   *
+   * @return  the patterns or an empty list when the file does not exist
+   */
+  static List<String> readPatterns(File file) throws IOException {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    } catch (NoSuchFileException e) {
+      return Collections.emptyList();
+    }
+    List<String> patterns = new ArrayList<>(lines.size());
+    for (String line : lines) {
+      line = line.trim();
+      if (!line.isEmpty() && line.charAt(0) != '#') {
+        patterns.add(line);
+      }
+    }
+    return patterns;
+  }
+
+  /**
+   * Matches one character.
+   */
+  private static final byte LITERAL = 0;
+
+  /**
+   * Matches any one character other than {@code /}.
+   */
+  private static final byte ANY_CHAR = 1;
+
+  /**
+   * Matches any number of characters other than {@code /}.
+   */
+  private static final byte STAR = 2;
+
+  /**
+   * Matches any number of characters ending in {@code /}.
+   */
+  private static final byte DIRECTORIES = 3;
+
+  /**
+   * Matches any one character.
+   */
+  private static final byte ANY_PATH_CHAR = 4;
+
+  /**
+   * Matches any number of characters.
+   */
+  private static final byte ANY_PATH = 5;
+
+  /**
+   * The end of a pattern.
+   */
+  private static final byte MATCH = 6;
+
+  /**
+   * The maximum number of states of the deterministic automaton before it is discarded and built again.
+   */
+  private static final int MAX_DFA_STATES = 4096;
+
+  private static final int UNKNOWN = -1;
+
+  /**
+   * The deterministic state with no active states, where no pattern can match.
+   */
+  private static final int DEAD = 0;
+
+  // The nondeterministic automaton, with one state per element of the patterns
+  private final byte[] types;
+  private final int[] literalClasses;
+  private final int words;
+  private final long[] initial;
+  private final long[] matches;
+
+  // The character classes, with class zero for characters not in any pattern
+  private final char[] alphabet;
+  private final int[] asciiClasses = new int[128];
+  private final int slashClass;
+
+  // The deterministic automaton, built as paths are matched
+  private final Map<StateSet, Integer> dfaIds = new HashMap<>();
+  private final List<long[]> dfaSets = new ArrayList<>();
+  private int[][] dfaTransitions;
+  private boolean[] dfaMatches;
+  private int dfaStart;
+
+  /**
+   * Compiles the given patterns.
+   *
+   * @throws  IllegalArgumentException  when a pattern is empty
+   */
+  PathPatternRule(List<String> patterns) throws IllegalArgumentException {
+    int maxStates = 0;
+    for (String pattern : patterns) {
+      maxStates += pattern.length() + 3;
+    }
+    byte[] newTypes = new byte[maxStates];
+    char[] newChars = new char[maxStates];
+    int numStates = 0;
+    List<Integer> starts = new ArrayList<>(patterns.size());
+    for (String pattern : patterns) {
+      String p = pattern;
+      if (p.endsWith("/")) {
+        p = p.substring(0, p.length() - 1);
+      }
+      if (p.isEmpty()) {
+        throw new IllegalArgumentException("Empty pattern: \"" + pattern + '"');
+      }
+      starts.add(numStates);
+      if (p.charAt(0) != '/' && !p.equals("**") && !p.startsWith("**/")) {
+        // Unanchored, unless already starting with any number of directories
+        newTypes[numStates++] = DIRECTORIES;
+      }
+      int len = p.length();
+      for (int i = 0; i < len; i++) {
+        char ch = p.charAt(i);
+        boolean segmentStart = i == 0 || p.charAt(i - 1) == '/';
+        if (segmentStart && p.startsWith("**", i)) {
+          if (i + 2 == len) {
+            // At least one character, so the directory itself does not match
+            newTypes[numStates++] = ANY_PATH_CHAR;
+            newTypes[numStates++] = ANY_PATH;
+            i++;
+            continue;
+          }
+          if (p.charAt(i + 2) == '/') {
+            newTypes[numStates++] = DIRECTORIES;
+            i += 2;
+            continue;
+          }
+        }
+        if (ch == '*') {
+          // Repeated stars are the same as one
+          if (numStates == 0 || newTypes[numStates - 1] != STAR) {
+            newTypes[numStates++] = STAR;
+          }
+        } else if (ch == '?') {
+          newTypes[numStates++] = ANY_CHAR;
+        } else {
+          newTypes[numStates] = LITERAL;
+          newChars[numStates++] = ch;
+        }
+      }
+      newTypes[numStates++] = MATCH;
+    }
+    types = Arrays.copyOf(newTypes, numStates);
+
+    // Every character in the patterns has its own class, all others share class zero
+    SortedSet<Character> literals = new TreeSet<>();
+    literals.add('/');
+    for (int state = 0; state < numStates; state++) {
+      if (types[state] == LITERAL) {
+        literals.add(newChars[state]);
+      }
+    }
+    alphabet = new char[literals.size()];
+    int index = 0;
+    for (char ch : literals) {
+      alphabet[index++] = ch;
+    }
+    for (char ch = 0; ch < asciiClasses.length; ch++) {
+      asciiClasses[ch] = searchClass(ch);
+    }
+    slashClass = getClass('/');
+    literalClasses = new int[numStates];
+    for (int state = 0; state < numStates; state++) {
+      literalClasses[state] = types[state] == LITERAL ? getClass(newChars[state]) : UNKNOWN;
+    }
+
+    words = (numStates + Long.SIZE - 1) / Long.SIZE;
+    initial = new long[words];
+    for (int start : starts) {
+      add(initial, start);
+    }
+    matches = new long[words];
+    for (int state = 0; state < numStates; state++) {
+      if (types[state] == MATCH) {
+        matches[state / Long.SIZE] |= 1L << state;
+      }
+    }
+    resetDfa();
+  }
+
+  /**
+   * Gets the class of a character, with the platform path separator in the class of {@code /}.
+   */
+  private int getClass(char ch) {
+    return ch < asciiClasses.length ? asciiClasses[ch] : searchClass(ch);
+  }
+
+  private int searchClass(char ch) {
+    if (ch == File.separatorChar) {
+      ch = '/';
+    }
+    int index = Arrays.binarySearch(alphabet, ch);
+    return index < 0 ? 0 : (index + 1);
+  }
+
+  /**
+   * Adds a state along with the states following it without consuming a character.
+   */
+  private void add(long[] states, int state) {
+    while (true) {
+      states[state / Long.SIZE] |= 1L << state;
+      byte type = types[state];
+      if (type != STAR && type != DIRECTORIES && type != ANY_PATH) {
+        break;
+      }
+      state++;
+    }
+  }
+
+  /**
+   * Gets the states following the given states on a character of the given class.
+   */
+  private long[] step(long[] current, int charClass) {
+    long[] next = new long[words];
+    boolean slash = charClass == slashClass;
+    for (int w = 0; w < words; w++) {
+      long bits = current[w];
+      while (bits != 0) {
+        int state = w * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        switch (types[state]) {
+          case LITERAL:
+            if (literalClasses[state] == charClass) {
+              add(next, state + 1);
+            }
+            break;
+          case ANY_CHAR:
+            if (!slash) {
+              add(next, state + 1);
+            }
+            break;
+          case STAR:
+            if (!slash) {
+              add(next, state);
+            }
+            break;
+          case DIRECTORIES:
+            // Only a slash ends a directory, so the state following is not entered on other characters
+            next[state / Long.SIZE] |= 1L << state;
+            if (slash) {
+              add(next, state + 1);
+            }
+            break;
+          case ANY_PATH_CHAR:
+            add(next, state + 1);
+            break;
+          case ANY_PATH:
+            add(next, state);
+            break;
+          case MATCH:
+            break;
+          default:
+            throw new AssertionError();
+        }
+      }
+    }
+    return next;
+  }
+
+  /**
+   * A set of nondeterministic states, used to find the deterministic state already built for it.
+   */
+  private static final class StateSet {
+    private final long[] states;
+
+    private StateSet(long[] states) {
+      this.states = states;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof StateSet) && Arrays.equals(states, ((StateSet) obj).states);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(states);
+    }
+  }
+
+  /**
+   * Gets the deterministic state for the given set, adding it when new.
+   */
+  private int getDfaState(long[] states) {
+    StateSet key = new StateSet(states);
+    Integer id = dfaIds.get(key);
+    if (id != null) {
+      return id;
+    }
+    int newId = dfaSets.size();
+    if (newId == dfaTransitions.length) {
+      dfaTransitions = Arrays.copyOf(dfaTransitions, newId * 2);
+      dfaMatches = Arrays.copyOf(dfaMatches, newId * 2);
+    }
+    int[] transitions = new int[alphabet.length + 1];
+    Arrays.fill(transitions, UNKNOWN);
+    dfaTransitions[newId] = transitions;
+    boolean match = false;
+    for (int w = 0; w < words; w++) {
+      if ((states[w] & matches[w]) != 0) {
+        match = true;
+        break;
+      }
+    }
+    dfaMatches[newId] = match;
+    dfaSets.add(states);
+    dfaIds.put(key, newId);
+    return newId;
+  }
+
+  private void resetDfa() {
+    dfaIds.clear();
+    dfaSets.clear();
+    dfaTransitions = new int[16][];
+    dfaMatches = new boolean[16];
+    int dead = getDfaState(new long[words]);
+    assert dead == DEAD;
+    dfaStart = getDfaState(initial);
+  }
+
+  /**
+   * Builds the transition from a deterministic state on a character of the given class.
+   */
+  private int buildTransition(int dfaState, int charClass) {
+    long[] states = dfaSets.get(dfaState);
+    if (dfaSets.size() >= MAX_DFA_STATES) {
+      resetDfa();
+      dfaState = getDfaState(states);
+    }
+    int next = getDfaState(step(states, charClass));
+    dfaTransitions[dfaState][charClass] = next;
+    return next;
+  }
+
+  /**
+   * Checks if the given path, or any directory containing it, matches any of the patterns.
+   * Once the automaton has the states needed, this does not allocate.
+   */
+  boolean matches(String filename) {
+    int state = dfaStart;
+    int len = filename.length();
+    for (int i = 0; i < len; i++) {
+      int charClass = getClass(filename.charAt(i));
+      // A directory that matches excludes everything below it
+      if (charClass == slashClass && dfaMatches[state]) {
+        return true;
+      }
+      int next = dfaTransitions[state][charClass];
+      if (next == UNKNOWN) {
+        next = buildTransition(state, charClass);
+      }
+      if (next == DEAD) {
+        return false;
+      }
+      state = next;
+    }
+    return dfaMatches[state];
+  }
+
+  /**
+   * Excludes the paths that match, including all others.
+   */
+  @Override
+  public boolean isIncluded(String filename) {
+    return !matches(filename);
+  }
+
+  /**
+   * Wraps a rule to exclude the paths that match before the rule is used.
+   */
+  FilesystemIteratorRule wrap(FilesystemIteratorRule rule) {
+    return new FilesystemIteratorRule() {
+      @Override
+      public boolean isIncluded(String filename) throws IOException {
+        return !matches(filename) && rule.isIncluded(filename);
+      }
+    };
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adds the time spent writing and flushing the wrapped stream to a phase of a pass.
+ * Time counted in a nested phase, by another instance further down the stream, may be excluded.
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PhaseTimingOutputStream extends FilterOutputStream {
+
+  private final PassMetrics pass;
+  private final BackupPhase phase;
+  private final BackupPhase nested;
+
+  /**
+   * Creates a new timing stream.
+   *
+   * @param  nested  the phase of a timing stream wrapped by this one, which is excluded from this phase,
+   *                 or {@code null} for none
+   */
+  PhaseTimingOutputStream(OutputStream out, PassMetrics pass, BackupPhase phase, BackupPhase nested) {
+    super(out);
+    this.pass = pass;
+    this.phase = phase;
+    this.nested = nested;
+  }
+
+  private void time(long start, long nestedStart, BackupEvents.StallEvent event, long bytes) {
+    long elapsed = System.nanoTime() - start;
+    if (nested != null) {
+      elapsed -= pass.getNanos(nested) - nestedStart;
+    }
+    pass.addNanos(phase, elapsed);
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.replication = pass.replication;
+        event.phase = phase.name();
+        event.phaseNanos = elapsed;
+        event.bytes = bytes;
+        event.commit();
+      }
+    }
+  }
+
+  private static BackupEvents.StallEvent beginStallEvent() {
+    if (BackupEvents.StallEvent.TYPE.isEnabled()) {
+      BackupEvents.StallEvent event = new BackupEvents.StallEvent();
+      event.begin();
+      return event;
+    } else {
+      return null;
+    }
+  }
+
+  private long getNestedNanos() {
+    return nested == null ? 0 : pass.getNanos(nested);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    BackupEvents.StallEvent event = beginStallEvent();
+    long nestedStart = getNestedNanos();
+    long start = System.nanoTime();
+    try {
+      out.write(b);
+    } finally {
+      time(start, nestedStart, event, 1);
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    BackupEvents.StallEvent event = beginStallEvent();
+    long nestedStart = getNestedNanos();
+    long start = System.nanoTime();
+    try {
+      out.write(b, off, len);
+    } finally {
+      time(start, nestedStart, event, len);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    BackupEvents.StallEvent event = beginStallEvent();
+    long nestedStart = getNestedNanos();
+    long start = System.nanoTime();
+    try {
+      out.flush();
+    } finally {
+      time(start, nestedStart, event, 0);
+    }
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * aoserv-backup - Backup client for the AOServ Platform.
- * Copyright (C) 2003-2009, 2018, 2019, 2020, 2021, 2022, 2024  AO Industries, Inc.
+ * Copyright (C) 2003-2009, 2018, 2019, 2020, 2021, 2022, 2024, 2026  AO Industries, Inc.
  *     support@aoindustries.com
  *     7262 Bull Pen Cir
  *     Mobile, AL 36695
@@ -43,34 +43,26 @@ import java.util.Map;
  */
 public abstract class PosixFileEnvironment extends FileEnvironment {
 
-  private final Object unixFileCacheLock = new Object();
-  private final Map<FileReplication, File> lastFiles = new HashMap<>();
-  private final Map<FileReplication, PosixFile> lastPosixFiles = new HashMap<>();
-  private final Map<FileReplication, Stat> lastStats = new HashMap<>();
-
   /**
-   * Gets the POSIX file for the given path.
+   * The last POSIX file and its stat of a replication, since each metadata method is called in turn for the
+   * same path.
    */
-  protected PosixFile getPosixFile(FileReplication ffr, String filename) throws IOException {
-    File file = getFile(ffr, filename);
-    synchronized (unixFileCacheLock) {
-      PosixFile lastPosixFile;
-      if (file != lastFiles.get(ffr)) {
-        lastPosixFile = new PosixFile(file);
-        lastPosixFiles.put(ffr, lastPosixFile);
-        lastStats.put(ffr, lastPosixFile.getStat());
-        lastFiles.put(ffr, file);
-      } else {
-        lastPosixFile = lastPosixFiles.get(ffr);
-      }
-      return lastPosixFile;
+  private static final class LastPosixFile {
+    private final File file;
+    private final PosixFile posixFile;
+    private final Stat stat;
+
+    private LastPosixFile(File file) throws IOException {
+      this.file = file;
+      this.posixFile = new PosixFile(file);
+      this.stat = posixFile.getStat();
     }
   }
 
-  /**
-   * Stats the given path.
-   */
-  protected Stat getStat(FileReplication ffr, String filename) throws IOException {
+  private final Object unixFileCacheLock = new Object();
+  private final Map<FileReplication, LastPosixFile> lastPosixFiles = new HashMap<>();
+
+  private LastPosixFile getLastPosixFile(FileReplication ffr, String filename) throws IOException {
     if (filename == null) {
       throw new AssertionError("filename is null");
     }
@@ -79,20 +71,29 @@ public abstract class PosixFileEnvironment extends FileEnvironment {
       throw new AssertionError("file is null");
     }
     synchronized (unixFileCacheLock) {
-      Stat lastStat;
-      if (file != lastFiles.get(ffr)) {
-        PosixFile lastPosixFile = new PosixFile(file);
+      LastPosixFile lastPosixFile = lastPosixFiles.get(ffr);
+      if (lastPosixFile == null || file != lastPosixFile.file) {
+        lastPosixFile = new LastPosixFile(file);
         lastPosixFiles.put(ffr, lastPosixFile);
-        lastStat = lastPosixFile.getStat();
-        lastStats.put(ffr, lastStat);
-        lastFiles.put(ffr, file);
-      } else {
-        lastStat = lastStats.get(ffr);
       }
-      return lastStat;
+      return lastPosixFile;
     }
   }
 
+  /**
+   * Gets the POSIX file for the given path.
+   */
+  protected PosixFile getPosixFile(FileReplication ffr, String filename) throws IOException {
+    return getLastPosixFile(ffr, filename).posixFile;
+  }
+
+  /**
+   * Stats the given path.
+   */
+  protected Stat getStat(FileReplication ffr, String filename) throws IOException {
+    return getLastPosixFile(ffr, filename).stat;
+  }
+
   @Override
   public long getStatMode(FileReplication ffr, String filename) throws IOException {
     return getStat(ffr, filename).getRawMode();
@@ -132,9 +133,7 @@ public abstract class PosixFileEnvironment extends FileEnvironment {
   public void cleanup(FileReplication ffr) throws IOException, SQLException {
     try {
       synchronized (unixFileCacheLock) {
-        lastFiles.remove(ffr);
         lastPosixFiles.remove(ffr);
-        lastStats.remove(ffr);
       }
     } finally {
       super.cleanup(ffr);
@@ -0,0 +1,165 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Walks the filenames of another iterator in a background thread, so that directories are listed while the
+ * replication thread waits on the daemon.
+ *
+ * <p>Filenames are handed over in chunks through a bounded queue, limiting how far the walk runs ahead.  Any
+ * exception thrown by the wrapped iterator is rethrown by the replication thread once it reaches that
+ * position.</p>
+ *
+ * <p>The iterator itself is used by a single thread.  It must be closed to stop the background thread when
+ * not iterated to the end.  When the replication thread is interrupted while waiting, its interrupted status
+ * is restored and a {@link CancellationException} is thrown, which the caller treats as a stop.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class PrefetchingIterator implements Iterator<String>, AutoCloseable {
+
+  private static final int CHUNK_SIZE = 256;
+
+  /**
+   * Marks the end of iteration in the queue.
+   */
+  private static final Object END = new Object();
+
+  private final BlockingQueue<Object> queue;
+  private final Thread thread;
+
+  private String[] chunk;
+  private int chunkSize;
+  private int index;
+  private boolean ended;
+
+  /**
+   * @param  prefetch  the approximate number of filenames to read ahead
+   */
+  PrefetchingIterator(Iterator<String> iterator, int prefetch, String threadName) {
+    queue = new ArrayBlockingQueue<>(Math.max(1, prefetch / CHUNK_SIZE));
+    thread = new Thread(() -> walk(iterator), threadName);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @SuppressWarnings({"UseSpecificCatch", "TooBroadCatch"})
+  private void walk(Iterator<String> iterator) {
+    try {
+      try {
+        String[] filenames = new String[CHUNK_SIZE];
+        int count = 0;
+        while (iterator.hasNext()) {
+          filenames[count++] = iterator.next();
+          if (count == CHUNK_SIZE) {
+            queue.put(new Chunk(filenames, count));
+            filenames = new String[CHUNK_SIZE];
+            count = 0;
+          }
+        }
+        if (count > 0) {
+          queue.put(new Chunk(filenames, count));
+        }
+        queue.put(END);
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Throwable t) {
+        queue.put(t);
+      }
+    } catch (InterruptedException e) {
+      // Closed
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Chunk {
+    private final String[] filenames;
+    private final int size;
+
+    private Chunk(String[] filenames, int size) {
+      this.filenames = filenames;
+      this.size = size;
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!ended && (chunk == null || index >= chunkSize)) {
+      Object next;
+      try {
+        next = queue.take();
+      } catch (InterruptedException e) {
+        // Restore the interrupted status
+        Thread.currentThread().interrupt();
+        // Never end early, which would be taken as a complete walk
+        CancellationException cancelled = new CancellationException("Interrupted while waiting for filenames");
+        cancelled.initCause(e);
+        throw cancelled;
+      }
+      if (next == END) {
+        ended = true;
+        chunk = null;
+      } else if (next instanceof Chunk) {
+        Chunk c = (Chunk) next;
+        chunk = c.filenames;
+        chunkSize = c.size;
+        index = 0;
+      } else if (next instanceof RuntimeException) {
+        ended = true;
+        throw (RuntimeException) next;
+      } else if (next instanceof Error) {
+        ended = true;
+        throw (Error) next;
+      } else {
+        ended = true;
+        throw new RuntimeException((Throwable) next);
+      }
+    }
+    return !ended;
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    String filename = chunk[index];
+    chunk[index++] = null;
+    return filename;
+  }
+
+  /**
+   * Stops the background thread.
+   */
+  @Override
+  public void close() {
+    thread.interrupt();
+  }
+}
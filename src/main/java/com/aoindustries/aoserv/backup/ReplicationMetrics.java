@@ -0,0 +1,232 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The metrics for one replication, including live counters of the pass in progress.
+ *
+ * <p>The thread running a pass publishes copies of its {@link PassMetrics} once per batch, so the counters of
+ * the pass in progress are current as of the last batch.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ReplicationMetrics implements ReplicationMetricsMXBean {
+
+  /**
+   * A consistent view of the metrics at one point in time.
+   */
+  static final class Snapshot {
+    final int replication;
+    final PassMetrics current;
+    final PassMetrics last;
+    final PassMetrics totals;
+    final long passes;
+    final long failedPasses;
+
+    private Snapshot(int replication, PassMetrics current, PassMetrics last, PassMetrics totals, long passes, long failedPasses) {
+      this.replication = replication;
+      this.current = current;
+      this.last = last;
+      this.totals = totals;
+      this.passes = passes;
+      this.failedPasses = failedPasses;
+    }
+  }
+
+  private final int replication;
+
+  private PassMetrics current;
+  private PassMetrics last;
+  /**
+   * The sum of all completed passes.
+   */
+  private final PassMetrics totals;
+  private long passes;
+  private long failedPasses;
+  private long previousScanned = -1;
+  private long previousDuration = -1;
+
+  ReplicationMetrics(int replication) {
+    this.replication = replication;
+    this.totals = new PassMetrics(replication, -1);
+  }
+
+  /**
+   * Sets the size and duration of the previous successful pass, such as from the master at start-up,
+   * when not already known from a pass run by this process.
+   */
+  synchronized void setPreviousPass(long scanned, long duration) {
+    if (previousScanned == -1) {
+      previousScanned = scanned;
+      previousDuration = duration;
+    }
+  }
+
+  /**
+   * Publishes the current state of the pass in progress.
+   */
+  synchronized void publish(PassMetrics pass) {
+    current = pass.copy();
+  }
+
+  /**
+   * Records the end of a pass.
+   */
+  synchronized void passEnded(PassMetrics pass) {
+    assert pass.endTime != -1;
+    current = null;
+    last = pass.copy();
+    passes++;
+    if (pass.successful) {
+      previousScanned = pass.scanned;
+      previousDuration = pass.getDuration(pass.endTime);
+    } else {
+      failedPasses++;
+    }
+    totals.add(pass);
+  }
+
+  /**
+   * Gets a consistent view of these metrics.
+   */
+  synchronized Snapshot getSnapshot() {
+    // Published PassMetrics are never modified, so may be shared
+    return new Snapshot(replication, current, last, totals.copy(), passes, failedPasses);
+  }
+
+  /**
+   * Gets the progress of the pass in progress.
+   *
+   * @return  the progress or {@code null} when no pass is running
+   */
+  synchronized BackupProgress getProgress() {
+    return current == null ? null : new BackupProgress(replication, current, System.currentTimeMillis(), previousScanned, previousDuration);
+  }
+
+  private static Map<String, Long> getPhaseMillis(PassMetrics pass) {
+    if (pass == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    for (BackupPhase phase : BackupPhase.getValues()) {
+      phaseMillis.put(phase.name(), pass.getNanos(phase) / 1000000);
+    }
+    return phaseMillis;
+  }
+
+  @Override
+  public int getReplication() {
+    return replication;
+  }
+
+  @Override
+  public synchronized boolean isPassInProgress() {
+    return current != null;
+  }
+
+  @Override
+  public synchronized long getCurrentPassStartTime() {
+    return current == null ? -1 : current.startTime;
+  }
+
+  @Override
+  public synchronized String getCurrentPath() {
+    return current == null ? null : current.currentPath;
+  }
+
+  @Override
+  public synchronized long getEstimatedRemainingMillis() {
+    BackupProgress progress = getProgress();
+    return progress == null ? -1 : progress.getEstimatedRemainingMillis();
+  }
+
+  @Override
+  public synchronized long getCurrentPassScanned() {
+    return current == null ? 0 : current.scanned;
+  }
+
+  @Override
+  public synchronized long getCurrentPassUpdated() {
+    return current == null ? 0 : current.updated;
+  }
+
+  @Override
+  public synchronized long getCurrentPassBytes() {
+    return current == null ? 0 : (current.bytesOut + current.bytesIn);
+  }
+
+  @Override
+  public synchronized Map<String, Long> getCurrentPassPhaseMillis() {
+    return getPhaseMillis(current);
+  }
+
+  @Override
+  public synchronized long getLastPassStartTime() {
+    return last == null ? -1 : last.startTime;
+  }
+
+  @Override
+  public synchronized long getLastPassEndTime() {
+    return last == null ? -1 : last.endTime;
+  }
+
+  @Override
+  public synchronized boolean isLastPassSuccessful() {
+    return last != null && last.successful;
+  }
+
+  @Override
+  public synchronized long getLastPassScanned() {
+    return last == null ? 0 : last.scanned;
+  }
+
+  @Override
+  public synchronized long getLastPassUpdated() {
+    return last == null ? 0 : last.updated;
+  }
+
+  @Override
+  public synchronized long getLastPassBytes() {
+    return last == null ? 0 : (last.bytesOut + last.bytesIn);
+  }
+
+  @Override
+  public synchronized Map<String, Long> getLastPassPhaseMillis() {
+    return getPhaseMillis(last);
+  }
+
+  @Override
+  public synchronized long getPasses() {
+    return passes;
+  }
+
+  @Override
+  public synchronized long getFailedPasses() {
+    return failedPasses;
+  }
+}
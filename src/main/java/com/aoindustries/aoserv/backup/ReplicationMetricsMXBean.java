@@ -0,0 +1,130 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the metrics for one replication, registered as
+ * <code>com.aoindustries.aoserv.backup:type=FileReplication,name={pkey}</code>.
+ *
+ * <p>Phase timings are keyed by the names of {@link BackupPhase}.  Times are in milliseconds since the epoch,
+ * or <code>-1</code> when unknown.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public interface ReplicationMetricsMXBean {
+
+  /**
+   * Gets the ID of the replication.
+   */
+  int getReplication();
+
+  /**
+   * Is a backup pass currently running.
+   */
+  boolean isPassInProgress();
+
+  /**
+   * Gets the start time of the pass in progress.
+   */
+  long getCurrentPassStartTime();
+
+  /**
+   * Gets the last path scanned by the pass in progress.
+   */
+  String getCurrentPath();
+
+  /**
+   * Gets the estimated time remaining in the pass in progress, or <code>-1</code> when unknown.
+   *
+   * @see  BackupProgress#getEstimatedRemainingMillis()
+   */
+  long getEstimatedRemainingMillis();
+
+  /**
+   * Gets the number of files scanned so far by the pass in progress.
+   */
+  long getCurrentPassScanned();
+
+  /**
+   * Gets the number of files updated so far by the pass in progress.
+   */
+  long getCurrentPassUpdated();
+
+  /**
+   * Gets the number of bytes sent and received so far by the pass in progress.
+   */
+  long getCurrentPassBytes();
+
+  /**
+   * Gets the time spent in each phase so far by the pass in progress.
+   */
+  Map<String, Long> getCurrentPassPhaseMillis();
+
+  /**
+   * Gets the start time of the last completed pass.
+   */
+  long getLastPassStartTime();
+
+  /**
+   * Gets the end time of the last completed pass.
+   */
+  long getLastPassEndTime();
+
+  /**
+   * Was the last completed pass successful.
+   */
+  boolean isLastPassSuccessful();
+
+  /**
+   * Gets the number of files scanned by the last completed pass.
+   */
+  long getLastPassScanned();
+
+  /**
+   * Gets the number of files updated by the last completed pass.
+   */
+  long getLastPassUpdated();
+
+  /**
+   * Gets the number of bytes sent and received by the last completed pass.
+   */
+  long getLastPassBytes();
+
+  /**
+   * Gets the time spent in each phase by the last completed pass.
+   */
+  Map<String, Long> getLastPassPhaseMillis();
+
+  /**
+   * Gets the number of passes completed since this process started.
+   */
+  long getPasses();
+
+  /**
+   * Gets the number of passes failed since this process started.
+   */
+  long getFailedPasses();
+}
@@ -0,0 +1,150 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tracks which of the required filenames have been found during a pass, checking each scanned filename without
+ * allocation.
+ *
+ * <p>Only a handful of paths are typically required, while tens of millions may be scanned.  The required
+ * paths are kept in a sorted array and most scanned filenames are rejected by a bitmap of the required lengths
+ * alone.  The remaining are found by a binary search comparing the region of the filename before any trailing
+ * separator, instead of allocating a trimmed substring for every directory.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class RequiredFilenames {
+
+  private final String[] required;
+  private final boolean[] found;
+  private final long[] lengths;
+  private int remaining;
+
+  /**
+   * @param  required  the required paths, which must not include any trailing separators
+   */
+  RequiredFilenames(Collection<String> required) {
+    String[] sorted = required.toArray(new String[required.size()]);
+    Arrays.sort(sorted);
+    // Remove any duplicates
+    int unique = 0;
+    for (String filename : sorted) {
+      if (unique == 0 || !sorted[unique - 1].equals(filename)) {
+        sorted[unique++] = filename;
+      }
+    }
+    this.required = Arrays.copyOf(sorted, unique);
+    this.found = new boolean[unique];
+    this.remaining = unique;
+    int maxLength = 0;
+    for (String filename : this.required) {
+      maxLength = Math.max(maxLength, filename.length());
+    }
+    lengths = new long[(maxLength >>> 6) + 1];
+    for (String filename : this.required) {
+      int length = filename.length();
+      lengths[length >>> 6] |= 1L << length;
+    }
+  }
+
+  /**
+   * Compares a required filename to the first <code>length</code> characters of a scanned filename,
+   * consistent with {@link String#compareTo(java.lang.String)}.
+   */
+  private static int compare(String requiredFilename, String filename, int length) {
+    int requiredLength = requiredFilename.length();
+    int limit = Math.min(requiredLength, length);
+    for (int i = 0; i < limit; i++) {
+      char c1 = requiredFilename.charAt(i);
+      char c2 = filename.charAt(i);
+      if (c1 != c2) {
+        return c1 - c2;
+      }
+    }
+    return requiredLength - length;
+  }
+
+  /**
+   * Marks a scanned filename as found.  Directories end with the path separator, which is not part of the
+   * required path.
+   */
+  void found(String filename) {
+    if (remaining == 0) {
+      return;
+    }
+    int length = filename.length();
+    if (filename.endsWith(File.separator)) {
+      length--;
+    }
+    int word = length >>> 6;
+    if (word >= lengths.length || (lengths[word] & (1L << length)) == 0) {
+      return;
+    }
+    int low = 0;
+    int high = required.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(required[mid], filename, length);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        if (!found[mid]) {
+          found[mid] = true;
+          remaining--;
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Checks if all of the required filenames have been found.
+   */
+  boolean isEmpty() {
+    return remaining == 0;
+  }
+
+  /**
+   * Gets the required filenames not yet found, in sorted order.
+   */
+  List<String> getRemaining() {
+    List<String> list = new ArrayList<>(remaining);
+    for (int i = 0; i < required.length; i++) {
+      if (!found[i]) {
+        list.add(required[i]);
+      }
+    }
+    return list;
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.io.posix.PosixFile;
+import com.aoindustries.aoserv.client.backup.FileReplication;
+import com.aoindustries.aoserv.daemon.client.AoservDaemonProtocol;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * Runs the filesystem walk and metadata collection of a backup pass without contacting any daemon, reporting
+ * rates, stat latency, and heap use.  Optionally reads and hashes the contents of every regular file to measure
+ * read throughput.
+ *
+ * <p>This is used to size batch and compression settings and compare filesystems before enabling replication
+ * on a new host.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class ScanBenchmark {
+
+  /**
+   * The interval between progress lines, in nanoseconds.
+   */
+  private static final long PROGRESS_INTERVAL = 10L * 1000 * 1000 * 1000;
+
+  /**
+   * The number of entries between samples of the heap.
+   */
+  private static final int HEAP_SAMPLE_INTERVAL = 10000;
+
+  private final BackupEnvironment environment;
+  private final FileReplication ffr;
+  private final boolean hash;
+  private final PrintStream out;
+
+  private final LatencyHistogram statNanos = new LatencyHistogram();
+  private long entries;
+  private long directories;
+  private long vanished;
+  private long regularFiles;
+  private long bytesRead;
+  private long readNanos;
+  private long peakHeap;
+
+  /**
+   * @param  ffr  the replication or {@code null} for environments that do not require one
+   */
+  ScanBenchmark(BackupEnvironment environment, FileReplication ffr, boolean hash, PrintStream out) {
+    this.environment = environment;
+    this.ffr = ffr;
+    this.hash = hash;
+    this.out = out;
+  }
+
+  private void sampleHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    if (used > peakHeap) {
+      peakHeap = used;
+    }
+  }
+
+  /**
+   * Collects the same metadata as a backup pass.
+   *
+   * @return  the stat mode
+   */
+  private long stat(String filename) throws IOException {
+    long mode = environment.getStatMode(ffr, filename);
+    if (!PosixFile.isSocket(mode)) {
+      if (PosixFile.isRegularFile(mode)) {
+        environment.getLength(ffr, filename);
+      }
+      environment.getUid(ffr, filename);
+      environment.getGid(ffr, filename);
+      boolean isSymLink = PosixFile.isSymLink(mode);
+      if (isSymLink) {
+        environment.readLink(ffr, filename);
+      } else {
+        environment.getModifyTime(ffr, filename);
+      }
+      if (PosixFile.isBlockDevice(mode) || PosixFile.isCharacterDevice(mode)) {
+        environment.getDeviceIdentifier(ffr, filename);
+      }
+      environment.getServerPath(ffr, filename);
+    }
+    return mode;
+  }
+
+  private byte[] readBuffer;
+  private ChunkDigest chunkDigest;
+
+  /**
+   * Reads and hashes the contents of a regular file, one chunk at a time in the chunk size used by backup passes.
+   */
+  private void read(String filename) throws IOException {
+    if (readBuffer == null) {
+      readBuffer = new byte[AoservDaemonProtocol.FAILOVER_FILE_REPLICATION_CHUNK_SIZE];
+      chunkDigest = ChunkDigest.Algorithm.MD5.newInstance();
+    }
+    long readStart = System.nanoTime();
+    try (InputStream in = environment.getInputStream(ffr, filename)) {
+      int count;
+      // Each read fills a whole chunk, except at the end of the file
+      while ((count = in.readNBytes(readBuffer, 0, readBuffer.length)) > 0) {
+        chunkDigest.digest(readBuffer, 0, count);
+        bytesRead += count;
+      }
+    }
+    readNanos += System.nanoTime() - readStart;
+    regularFiles++;
+  }
+
+  private static String formatRate(long count, long nanos) {
+    return nanos <= 0 ? "-" : String.format("%.1f", count * 1000000000.0 / nanos);
+  }
+
+  private static String formatMicros(long nanos) {
+    return nanos < 0 ? "-" : String.format("%.1f", nanos / 1000.0);
+  }
+
+  private void printProgress(long elapsed) {
+    out.println(String.format("%.0f s: %d entries (%s/s), %d directories, peak heap %d MiB",
+        elapsed / 1000000000.0, entries, formatRate(entries, elapsed), directories, peakHeap >> 20));
+  }
+
+  /**
+   * Runs the scan, calling the same lifecycle methods of the environment as a backup pass.
+   */
+  void run() throws IOException, SQLException {
+    environment.preBackup(ffr);
+    environment.init(ffr);
+    long elapsed;
+    try {
+      final long startNanos = System.nanoTime();
+      long nextProgress = startNanos + PROGRESS_INTERVAL;
+      sampleHeap();
+      Iterator<String> filenameIterator = environment.getFilenameIterator(ffr);
+      while (filenameIterator.hasNext()) {
+        String filename = filenameIterator.next();
+        entries++;
+        if (filename.endsWith(File.separator)) {
+          directories++;
+        }
+        long statStart = System.nanoTime();
+        try {
+          long mode = stat(filename);
+          statNanos.record(System.nanoTime() - statStart);
+          if (hash && PosixFile.isRegularFile(mode)) {
+            read(filename);
+          }
+        } catch (FileNotFoundException e) {
+          // Normal because of a dynamic file system
+          vanished++;
+        }
+        long now = System.nanoTime();
+        if ((entries % HEAP_SAMPLE_INTERVAL) == 0) {
+          sampleHeap();
+          if (now >= nextProgress) {
+            printProgress(now - startNanos);
+            nextProgress = now + PROGRESS_INTERVAL;
+          }
+        }
+      }
+      sampleHeap();
+      elapsed = System.nanoTime() - startNanos;
+    } finally {
+      environment.cleanup(ffr);
+    }
+    environment.postBackup(ffr);
+
+    out.println();
+    out.println("Elapsed seconds:       " + String.format("%.1f", elapsed / 1000000000.0));
+    out.println("Entries:               " + entries + " (" + formatRate(entries, elapsed) + "/s)");
+    out.println("Directories:           " + directories + " (" + formatRate(directories, elapsed) + "/s)");
+    out.println("Vanished during scan:  " + vanished);
+    out.println("Stat microseconds:     p50=" + formatMicros(statNanos.getPercentile(50))
+        + " p90=" + formatMicros(statNanos.getPercentile(90))
+        + " p99=" + formatMicros(statNanos.getPercentile(99))
+        + " p99.9=" + formatMicros(statNanos.getPercentile(99.9)));
+    if (hash) {
+      out.println("Regular files read:    " + regularFiles);
+      out.println("Bytes read:            " + bytesRead + " (" + formatRate(bytesRead, readNanos) + " bytes/s while reading)");
+    }
+    out.println("Peak heap sampled MiB: " + (peakHeap >> 20));
+    out.flush();
+  }
+}
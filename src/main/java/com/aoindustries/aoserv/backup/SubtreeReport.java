@@ -0,0 +1,240 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ranks the directories and files of a pass by their cost, to find the paths worth excluding.
+ *
+ * <p>Paths must be added in the order of the filesystem walk, with directories ending in the path separator.
+ * The costs of each directory are the sum of its entire subtree, aggregated on a stack of the directories
+ * currently open in the walk.  Since each directory is closed exactly once, its total is final when ranked,
+ * and only the top {@link #TOP_N} of each ranking are retained.  Memory is bounded by the depth of the tree
+ * and the size of the rankings, regardless of the number of files.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+final class SubtreeReport {
+
+  /**
+   * The number of directories and files retained in each ranking.
+   */
+  static final int TOP_N = 20;
+
+  /**
+   * Gets the filename of the report for the given replication, within the state directory.
+   */
+  static String getFilename(int replication) {
+    return "subtree-report-" + replication + ".txt";
+  }
+
+  /**
+   * The costs that are ranked.
+   */
+  enum Cost {
+    BYTES("bytes sent", 1),
+    CHUNKS("chunks resent", 1),
+    NANOS("milliseconds stat and read", 1000000),
+    CHANGED("changed entries", 1);
+
+    private final String description;
+
+    /**
+     * The divisor to convert to the units of the description.
+     */
+    private final long divisor;
+
+    Cost(String description, long divisor) {
+      this.description = description;
+      this.divisor = divisor;
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+  }
+
+  private static final Cost[] costs = Cost.values();
+
+  private static final class Ranked {
+    private final String path;
+    private final long value;
+
+    private Ranked(String path, long value) {
+      this.path = path;
+      this.value = value;
+    }
+  }
+
+  private static final Comparator<Ranked> byValue = Comparator.comparingLong(ranked -> ranked.value);
+
+  /**
+   * A bounded ranking, retaining only the greatest values.
+   */
+  private static final class TopN {
+    private final PriorityQueue<Ranked> heap = new PriorityQueue<>(TOP_N + 1, byValue);
+
+    private void offer(String path, long value) {
+      if (value > 0) {
+        if (heap.size() < TOP_N) {
+          heap.add(new Ranked(path, value));
+        } else if (value > heap.peek().value) {
+          heap.poll();
+          heap.add(new Ranked(path, value));
+        }
+      }
+    }
+
+    private List<Ranked> getRanked() {
+      List<Ranked> ranked = new ArrayList<>(heap);
+      ranked.sort(Collections.reverseOrder(byValue));
+      return ranked;
+    }
+  }
+
+  private static final class OpenDirectory {
+    private final String path;
+    private final long[] totals = new long[costs.length];
+
+    private OpenDirectory(String path) {
+      this.path = path;
+    }
+  }
+
+  private final String separator;
+  private final Deque<OpenDirectory> openDirectories = new ArrayDeque<>();
+  private final TopN[] topDirectories = new TopN[costs.length];
+  private final TopN[] topFiles = new TopN[costs.length];
+  private final long[] fileCosts = new long[costs.length];
+
+  SubtreeReport(String separator) {
+    this.separator = separator;
+    for (int i = 0; i < costs.length; i++) {
+      topDirectories[i] = new TopN();
+      topFiles[i] = new TopN();
+    }
+  }
+
+  /**
+   * Closes the innermost open directory, ranking it and adding its totals to its parent.
+   */
+  private void closeDirectory() {
+    OpenDirectory closed = openDirectories.pop();
+    OpenDirectory parent = openDirectories.peek();
+    for (int i = 0; i < costs.length; i++) {
+      long total = closed.totals[i];
+      topDirectories[i].offer(closed.path, total);
+      if (parent != null) {
+        parent.totals[i] += total;
+      }
+    }
+  }
+
+  /**
+   * Adds the costs of the next path in the walk.
+   */
+  void add(String path, long bytes, long chunks, long nanos, boolean changed) {
+    // Close any directories that do not contain this path
+    while (!openDirectories.isEmpty() && !path.startsWith(openDirectories.peek().path)) {
+      closeDirectory();
+    }
+    fileCosts[Cost.BYTES.ordinal()] = bytes;
+    fileCosts[Cost.CHUNKS.ordinal()] = chunks;
+    fileCosts[Cost.NANOS.ordinal()] = nanos;
+    fileCosts[Cost.CHANGED.ordinal()] = changed ? 1 : 0;
+    OpenDirectory parent = openDirectories.peek();
+    if (path.endsWith(separator)) {
+      OpenDirectory directory = new OpenDirectory(path);
+      System.arraycopy(fileCosts, 0, directory.totals, 0, costs.length);
+      openDirectories.push(directory);
+    } else {
+      for (int i = 0; i < costs.length; i++) {
+        long cost = fileCosts[i];
+        topFiles[i].offer(path, cost);
+        if (parent != null) {
+          parent.totals[i] += cost;
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes all open directories.  Must be called after the last path is added.
+   */
+  void finish() {
+    while (!openDirectories.isEmpty()) {
+      closeDirectory();
+    }
+  }
+
+  private static void write(Appendable out, String type, Cost cost, TopN topN) throws IOException {
+    List<Ranked> ranked = topN.getRanked();
+    if (!ranked.isEmpty()) {
+      out.append("Top ").append(type).append(" by ").append(cost.toString()).append(':').append(System.lineSeparator());
+      for (Ranked entry : ranked) {
+        out.append(String.format("%20d  %s", entry.value / cost.divisor, entry.path)).append(System.lineSeparator());
+      }
+      out.append(System.lineSeparator());
+    }
+  }
+
+  /**
+   * Writes the rankings.
+   */
+  void write(Appendable out) throws IOException {
+    for (Cost cost : costs) {
+      write(out, "directories", cost, topDirectories[cost.ordinal()]);
+      write(out, "files", cost, topFiles[cost.ordinal()]);
+    }
+  }
+
+  /**
+   * Writes the rankings to the given file, replacing any previous file atomically.
+   */
+  void write(File file, String title) throws IOException {
+    File tempFile = new File(file.getPath() + ".new");
+    try (Writer out = new OutputStreamWriter(Files.newOutputStream(tempFile.toPath()), StandardCharsets.UTF_8)) {
+      out.append(title).append(System.lineSeparator()).append(System.lineSeparator());
+      write(out);
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
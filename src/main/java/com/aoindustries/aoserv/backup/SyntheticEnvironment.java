@@ -0,0 +1,709 @@
+/*
+ * aoserv-backup - Backup client for the AOServ Platform.
+ * Copyright (C) 2026  AO Industries, Inc.
+ *     support@aoindustries.com
+ *     7262 Bull Pen Cir
+ *     Mobile, AL 36695
+ *
+ * This file is part of aoserv-backup.
+ *
+ * aoserv-backup is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * aoserv-backup is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with aoserv-backup.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.aoindustries.aoserv.backup;
+
+import com.aoapps.io.posix.PosixFile;
+import com.aoapps.net.InetAddress;
+import com.aoindustries.aoserv.client.AoservConnector;
+import com.aoindustries.aoserv.client.backup.FileReplication;
+import com.aoindustries.aoserv.client.mysql.Server;
+import com.aoindustries.aoserv.client.net.Host;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A <code>SyntheticEnvironment</code> generates a deterministic virtual tree of files, for measuring the backup
+ * system at scale without provisioning storage.
+ *
+ * <p>Nothing is stored per file: the metadata and contents of each path are derived from a hash of the path,
+ * the {@link #PROPERTY_SEED seed}, and the number of passes started so far.  The tree has
+ * {@link #PROPERTY_DEPTH depth} levels of {@link #PROPERTY_FANOUT fanout} directories each, with the
+ * {@link #PROPERTY_FILE_COUNT files} divided evenly between the deepest directories.</p>
+ *
+ * <p>File sizes follow a log-normal distribution.  A fraction of files are symbolic links, character devices,
+ * or additional hard links to another file, sharing its metadata and contents.  On each pass a fraction of
+ * files are modified, each modification replacing one block of the contents so that chunked transfers find
+ * the remaining blocks unchanged.</p>
+ *
+ * <p>The settings are read from properties, all prefixed with the name of this class and a period.  The default
+ * constructor uses the system properties, so this environment may be given to the command line of
+ * {@link BackupDaemon}.</p>
+ *
+ * <p>There is no master server: {@link #getConnector()} and {@link #getThisHost()} always throw
+ * {@link IOException}, and the replication may be {@code null}.</p>
+ *
+ * @author  AO Industries, Inc.
+ */
+public class SyntheticEnvironment implements BackupEnvironment {
+
+  private static final String PROPERTY_PREFIX = SyntheticEnvironment.class.getName() + '.';
+
+  /** The number of regular files, symbolic links, and devices in the tree. */
+  public static final String PROPERTY_FILE_COUNT = PROPERTY_PREFIX + "fileCount";
+
+  /** The number of subdirectories in each directory above the deepest level. */
+  public static final String PROPERTY_FANOUT = PROPERTY_PREFIX + "fanout";
+
+  /** The number of levels of directories below the root. */
+  public static final String PROPERTY_DEPTH = PROPERTY_PREFIX + "depth";
+
+  /** The median size of regular files, in bytes. */
+  public static final String PROPERTY_MEDIAN_SIZE = PROPERTY_PREFIX + "medianSize";
+
+  /** The standard deviation of the natural logarithm of file sizes. */
+  public static final String PROPERTY_SIZE_SIGMA = PROPERTY_PREFIX + "sizeSigma";
+
+  /** The maximum size of regular files, in bytes. */
+  public static final String PROPERTY_MAX_SIZE = PROPERTY_PREFIX + "maxSize";
+
+  /** The fraction of files that are symbolic links. */
+  public static final String PROPERTY_SYMLINK_FRACTION = PROPERTY_PREFIX + "symlinkFraction";
+
+  /** The fraction of files that are character devices. */
+  public static final String PROPERTY_DEVICE_FRACTION = PROPERTY_PREFIX + "deviceFraction";
+
+  /** The fraction of files that are additional hard links to another file. */
+  public static final String PROPERTY_HARD_LINK_FRACTION = PROPERTY_PREFIX + "hardLinkFraction";
+
+  /** The fraction of files modified on each pass. */
+  public static final String PROPERTY_CHANGE_RATE = PROPERTY_PREFIX + "changeRate";
+
+  /** The seed that selects one of many trees with the same settings. */
+  public static final String PROPERTY_SEED = PROPERTY_PREFIX + "seed";
+
+  /** The directory where local state is stored, unset to not store any local state. */
+  public static final String PROPERTY_STATE_DIRECTORY = PROPERTY_PREFIX + "stateDirectory";
+
+  /** The bit rate profile, with semicolons separating lines, unset to not use a profile. */
+  public static final String PROPERTY_BIT_RATE_PROFILE = PROPERTY_PREFIX + "bitRateProfile";
+
+  /**
+   * The size of the blocks that are modified independently.
+   */
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * The modify time of files never modified.
+   */
+  private static final long BASE_TIME = 1577836800000L; // 2020-01-01T00:00:00Z
+
+  private static final long VERSION_INTERVAL = 60L * 60 * 1000;
+
+  private static final String ROOT = File.separator + "synthetic" + File.separator;
+
+  private final long fileCount;
+  private final int fanout;
+  private final int depth;
+  private final long medianSize;
+  private final double sizeSigma;
+  private final long maxSize;
+  private final double symlinkFraction;
+  private final double deviceFraction;
+  private final double hardLinkFraction;
+  private final double changeRate;
+  private final long seed;
+  private final File stateDirectory;
+  private final BitRateProfile bitRateProfile;
+
+  private final long leafCount;
+  private final long filesPerLeaf;
+  private final int directoryDigits;
+  private final int fileDigits;
+
+  private final AtomicLong passes = new AtomicLong();
+  private final Logger logger = Logger.getLogger(SyntheticEnvironment.class.getName());
+
+  /**
+   * Creates a synthetic environment configured by the system properties.
+   */
+  public SyntheticEnvironment() {
+    this(System.getProperties());
+  }
+
+  /**
+   * Creates a synthetic environment configured by the given properties.
+   *
+   * @throws IllegalArgumentException when a setting is out of range
+   */
+  public SyntheticEnvironment(Properties properties) throws IllegalArgumentException {
+    fileCount = Long.parseLong(properties.getProperty(PROPERTY_FILE_COUNT, "1000000"));
+    fanout = Integer.parseInt(properties.getProperty(PROPERTY_FANOUT, "32"));
+    depth = Integer.parseInt(properties.getProperty(PROPERTY_DEPTH, "3"));
+    medianSize = Long.parseLong(properties.getProperty(PROPERTY_MEDIAN_SIZE, "4096"));
+    sizeSigma = Double.parseDouble(properties.getProperty(PROPERTY_SIZE_SIGMA, "2.0"));
+    maxSize = Long.parseLong(properties.getProperty(PROPERTY_MAX_SIZE, Long.toString(1L << 30)));
+    symlinkFraction = Double.parseDouble(properties.getProperty(PROPERTY_SYMLINK_FRACTION, "0.01"));
+    deviceFraction = Double.parseDouble(properties.getProperty(PROPERTY_DEVICE_FRACTION, "0.0001"));
+    hardLinkFraction = Double.parseDouble(properties.getProperty(PROPERTY_HARD_LINK_FRACTION, "0.01"));
+    changeRate = Double.parseDouble(properties.getProperty(PROPERTY_CHANGE_RATE, "0.01"));
+    seed = Long.parseLong(properties.getProperty(PROPERTY_SEED, "0"));
+    String stateDirectoryProperty = properties.getProperty(PROPERTY_STATE_DIRECTORY);
+    stateDirectory = stateDirectoryProperty == null || stateDirectoryProperty.isEmpty() ? null : new File(stateDirectoryProperty);
+    String bitRateProfileProperty = properties.getProperty(PROPERTY_BIT_RATE_PROFILE);
+    bitRateProfile = bitRateProfileProperty == null || bitRateProfileProperty.isEmpty() ? null
+        : BitRateProfile.parse(bitRateProfileProperty.replace(';', '\n'));
+    if (fileCount < 0) {
+      throw new IllegalArgumentException("fileCount < 0: " + fileCount);
+    }
+    if (fanout < 1) {
+      throw new IllegalArgumentException("fanout < 1: " + fanout);
+    }
+    if (depth < 0) {
+      throw new IllegalArgumentException("depth < 0: " + depth);
+    }
+    if (medianSize < 0 || maxSize < 0) {
+      throw new IllegalArgumentException("File sizes may not be negative");
+    }
+    if (
+        symlinkFraction < 0 || deviceFraction < 0 || hardLinkFraction < 0
+            || (symlinkFraction + deviceFraction + hardLinkFraction) > 1
+    ) {
+      throw new IllegalArgumentException("File type fractions must be non-negative with a total of at most one");
+    }
+    if (changeRate < 0 || changeRate > 1) {
+      throw new IllegalArgumentException("changeRate out of range 0 to 1: " + changeRate);
+    }
+    long leaves = 1;
+    for (int level = 0; level < depth; level++) {
+      leaves = Math.multiplyExact(leaves, fanout);
+    }
+    leafCount = leaves;
+    filesPerLeaf = (fileCount + leafCount - 1) / leafCount;
+    directoryDigits = Integer.toString(fanout - 1).length();
+    fileDigits = Long.toString(Math.max(0, filesPerLeaf - 1)).length();
+  }
+
+  private static void appendPadded(StringBuilder path, long value, int digits) {
+    String str = Long.toString(value);
+    for (int i = str.length(); i < digits; i++) {
+      path.append('0');
+    }
+    path.append(str);
+  }
+
+  /**
+   * Gets the number of files in the given leaf directory.
+   */
+  private long getFilesInLeaf(long leaf) {
+    long first = leaf * filesPerLeaf;
+    return Math.max(0, Math.min(filesPerLeaf, fileCount - first));
+  }
+
+  /**
+   * Gets the path of the file with the given index.
+   */
+  private String getFilePath(long index) {
+    long leaf = index / filesPerLeaf;
+    StringBuilder path = new StringBuilder(ROOT);
+    long divisor = leafCount;
+    for (int level = 0; level < depth; level++) {
+      divisor /= fanout;
+      path.append('d');
+      appendPadded(path, (leaf / divisor) % fanout, directoryDigits);
+      path.append(File.separatorChar);
+    }
+    path.append('f');
+    appendPadded(path, index % filesPerLeaf, fileDigits);
+    return path.toString();
+  }
+
+  /**
+   * Walks the tree depth-first in sorted order, with directories ending in the path separator.
+   */
+  private class TreeIterator implements Iterator<String> {
+
+    /**
+     * The index of the next child in each open directory.
+     */
+    private final long[] next = new long[depth + 1];
+
+    /**
+     * The number of each open directory within its level.
+     */
+    private final long[] numbers = new long[depth + 1];
+
+    /**
+     * The length of the path of each open directory.
+     */
+    private final int[] lengths = new int[depth + 1];
+
+    private final StringBuilder path = new StringBuilder(ROOT);
+    private int level;
+    private String nextFilename = ROOT;
+
+    private TreeIterator() {
+      lengths[0] = ROOT.length();
+    }
+
+    private String findNext() {
+      while (true) {
+        path.setLength(lengths[level]);
+        if (level < depth) {
+          if (next[level] < fanout) {
+            long child = next[level]++;
+            path.append('d');
+            appendPadded(path, child, directoryDigits);
+            path.append(File.separatorChar);
+            numbers[level + 1] = numbers[level] * fanout + child;
+            level++;
+            lengths[level] = path.length();
+            next[level] = 0;
+            return path.toString();
+          }
+        } else if (next[level] < getFilesInLeaf(numbers[level])) {
+          path.append('f');
+          appendPadded(path, next[level]++, fileDigits);
+          return path.toString();
+        }
+        // Close this directory
+        if (level == 0) {
+          return null;
+        }
+        level--;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextFilename != null;
+    }
+
+    @Override
+    public String next() {
+      String filename = nextFilename;
+      if (filename == null) {
+        throw new NoSuchElementException();
+      }
+      nextFilename = findNext();
+      return filename;
+    }
+  }
+
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * Gets a uniform value in <code>[0, 1)</code> from the given hash.
+   */
+  private static double uniform(long hash) {
+    return (hash >>> 11) * 0x1.0p-53;
+  }
+
+  private long hash(String filename) {
+    long h = seed;
+    for (int i = 0, len = filename.length(); i < len; i++) {
+      h = h * 31 + filename.charAt(i);
+    }
+    return mix(h);
+  }
+
+  /**
+   * The generated metadata of one path.
+   */
+  private final class Entry {
+
+    private final String filename;
+    private final long mode;
+    private final long identity;
+    private final long length;
+    private final long version;
+    private final String linkTarget;
+
+    private Entry(String filename) throws FileNotFoundException {
+      this.filename = filename;
+      if (filename.endsWith(File.separator)) {
+        if (!filename.startsWith(ROOT)) {
+          throw new FileNotFoundException(filename);
+        }
+        mode = PosixFile.IS_DIRECTORY | 0755;
+        identity = hash(filename);
+        length = 0;
+        version = 0;
+        linkTarget = null;
+      } else {
+        long fileIndex = getFileIndex(filename);
+        long h = hash(filename);
+        double type = uniform(h);
+        if (type < symlinkFraction) {
+          mode = PosixFile.IS_SYM_LINK | 0777;
+          identity = h;
+          length = 0;
+          version = 0;
+          linkTarget = getFilePath(Long.remainderUnsigned(mix(h + 1), fileCount));
+        } else if (type < symlinkFraction + deviceFraction) {
+          mode = PosixFile.IS_CHARACTER_DEVICE | 0600;
+          identity = h;
+          length = 0;
+          version = 0;
+          linkTarget = null;
+        } else {
+          mode = PosixFile.IS_REGULAR_FILE | 0644;
+          if (type < symlinkFraction + deviceFraction + hardLinkFraction) {
+            // Share the metadata and contents of another file
+            long target = Long.remainderUnsigned(mix(h + 2), fileCount);
+            identity = target == fileIndex ? h : hash(getFilePath(target));
+          } else {
+            identity = h;
+          }
+          // Log-normal size
+          double u1 = uniform(mix(identity + 3));
+          double u2 = uniform(mix(identity + 4));
+          double z = Math.sqrt(-2 * Math.log(1 - u1)) * Math.cos(2 * Math.PI * u2);
+          length = Math.min(maxSize, Math.round(medianSize * Math.exp(sizeSigma * z)));
+          // The version increments for changeRate of the files on each pass
+          version = (long) Math.floor(passes.get() * changeRate + uniform(mix(identity + 5)));
+          linkTarget = null;
+        }
+      }
+    }
+
+    private long getModifyTime() {
+      return BASE_TIME + version * VERSION_INTERVAL + Long.remainderUnsigned(identity, VERSION_INTERVAL);
+    }
+  }
+
+  /**
+   * Gets the index of the file at the given path.
+   *
+   * @throws FileNotFoundException when the path is not a file in the tree
+   */
+  private long getFileIndex(String filename) throws FileNotFoundException {
+    if (!filename.startsWith(ROOT)) {
+      throw new FileNotFoundException(filename);
+    }
+    int pos = ROOT.length();
+    long leaf = 0;
+    try {
+      for (int level = 0; level < depth; level++) {
+        int end = filename.indexOf(File.separatorChar, pos);
+        if (end == -1 || filename.charAt(pos) != 'd') {
+          throw new FileNotFoundException(filename);
+        }
+        int child = Integer.parseInt(filename.substring(pos + 1, end));
+        if (child < 0 || child >= fanout) {
+          throw new FileNotFoundException(filename);
+        }
+        leaf = leaf * fanout + child;
+        pos = end + 1;
+      }
+      if (filename.charAt(pos) != 'f') {
+        throw new FileNotFoundException(filename);
+      }
+      long inLeaf = Long.parseLong(filename.substring(pos + 1));
+      if (inLeaf < 0 || inLeaf >= getFilesInLeaf(leaf)) {
+        throw new FileNotFoundException(filename);
+      }
+      return leaf * filesPerLeaf + inLeaf;
+    } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+      FileNotFoundException fnf = new FileNotFoundException(filename);
+      fnf.initCause(e);
+      throw fnf;
+    }
+  }
+
+  private final Object entryCacheLock = new Object();
+  private Entry lastEntry;
+
+  /**
+   * Gets the metadata for the given path, reusing the last when the same path is requested repeatedly.
+   */
+  private Entry getEntry(String filename) throws FileNotFoundException {
+    synchronized (entryCacheLock) {
+      Entry entry = lastEntry;
+      if (entry == null || !entry.filename.equals(filename)) {
+        entry = new Entry(filename);
+        lastEntry = entry;
+      }
+      return entry;
+    }
+  }
+
+  /**
+   * Generates the contents of a regular file.  Each block is generated from the last version that modified it,
+   * with one block modified per version.
+   */
+  private static class ContentInputStream extends InputStream {
+
+    private final long identity;
+    private final long length;
+    private final long version;
+    private final long numBlocks;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private long position;
+    private long blockNumber = -1;
+
+    private ContentInputStream(long identity, long length, long version) {
+      this.identity = identity;
+      this.length = length;
+      this.version = version;
+      this.numBlocks = Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    private void generate(long number) {
+      long blockVersion = version < number ? 0 : (version - (version - number) % numBlocks);
+      long state = mix(identity ^ mix(number * 0x9E3779B97F4A7C15L + blockVersion)) | 1;
+      for (int i = 0; i < BLOCK_SIZE; i += Long.BYTES) {
+        // xorshift64
+        state ^= state << 13;
+        state ^= state >>> 7;
+        state ^= state << 17;
+        long value = state;
+        for (int j = 0; j < Long.BYTES; j++) {
+          block[i + j] = (byte) value;
+          value >>>= 8;
+        }
+      }
+      blockNumber = number;
+    }
+
+    @Override
+    public int read() {
+      byte[] buff = new byte[1];
+      return read(buff, 0, 1) == -1 ? -1 : (buff[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (position >= length) {
+        return -1;
+      }
+      int total = 0;
+      while (len > 0 && position < length) {
+        long number = position / BLOCK_SIZE;
+        if (number != blockNumber) {
+          generate(number);
+        }
+        int blockOff = (int) (position % BLOCK_SIZE);
+        int count = (int) Math.min(Math.min(len, BLOCK_SIZE - blockOff), length - position);
+        System.arraycopy(block, blockOff, b, off, count);
+        position += count;
+        off += count;
+        len -= count;
+        total += count;
+      }
+      return total;
+    }
+  }
+
+  @Override
+  public long getStatMode(FileReplication ffr, String filename) throws IOException {
+    return getEntry(filename).mode;
+  }
+
+  @Override
+  public String[] getDirectoryList(FileReplication ffr, String filename) throws IOException {
+    String directory = filename.endsWith(File.separator) ? filename : (filename + File.separatorChar);
+    List<String> list = new ArrayList<>();
+    Iterator<String> iter = new TreeIterator();
+    while (iter.hasNext()) {
+      String path = iter.next();
+      if (path.length() > directory.length() && path.startsWith(directory)) {
+        int end = path.indexOf(File.separatorChar, directory.length());
+        if (end == -1 || end == path.length() - 1) {
+          list.add(path.substring(directory.length(), end == -1 ? path.length() : end));
+        }
+      }
+    }
+    return list.toArray(new String[list.size()]);
+  }
+
+  @Override
+  public int getUid(FileReplication ffr, String filename) throws IOException {
+    return 1000 + (int) Long.remainderUnsigned(getEntry(filename).identity, 16);
+  }
+
+  @Override
+  public int getGid(FileReplication ffr, String filename) throws IOException {
+    return 1000 + (int) Long.remainderUnsigned(getEntry(filename).identity >>> 8, 16);
+  }
+
+  @Override
+  public long getModifyTime(FileReplication ffr, String filename) throws IOException {
+    return getEntry(filename).getModifyTime();
+  }
+
+  @Override
+  public long getLength(FileReplication ffr, String filename) throws IOException {
+    return getEntry(filename).length;
+  }
+
+  @Override
+  public String readLink(FileReplication ffr, String filename) throws IOException {
+    Entry entry = getEntry(filename);
+    if (entry.linkTarget == null) {
+      throw new IOException("Not a symbolic link: " + filename);
+    }
+    return entry.linkTarget;
+  }
+
+  @Override
+  public long getDeviceIdentifier(FileReplication ffr, String filename) throws IOException {
+    Entry entry = getEntry(filename);
+    if (!PosixFile.isCharacterDevice(entry.mode)) {
+      throw new IOException("Not a device: " + filename);
+    }
+    // Major and minor below 256
+    return entry.identity & 0xffff;
+  }
+
+  @Override
+  public InputStream getInputStream(FileReplication ffr, String filename) throws IOException {
+    Entry entry = getEntry(filename);
+    if (!PosixFile.isRegularFile(entry.mode)) {
+      throw new IOException("Not a regular file: " + filename);
+    }
+    return new ContentInputStream(entry.identity, entry.length, entry.version);
+  }
+
+  @Override
+  public String getNameOfFile(FileReplication ffr, String filename) {
+    int end = filename.endsWith(File.separator) ? (filename.length() - 1) : filename.length();
+    return filename.substring(filename.lastIndexOf(File.separatorChar, end - 1) + 1, end);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>There is no master server for a synthetic environment.</p>
+   *
+   * @throws  IOException  always
+   */
+  @Override
+  public AoservConnector getConnector() throws IOException {
+    throw new IOException("No master server for a synthetic environment");
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>There is no master server for a synthetic environment.</p>
+   *
+   * @throws  IOException  always
+   */
+  @Override
+  public Host getThisHost() throws IOException {
+    throw new IOException("No master server for a synthetic environment");
+  }
+
+  @Override
+  public int getFailoverBatchSize(FileReplication ffr) {
+    return 1000;
+  }
+
+  @Override
+  public BitRateProfile getBitRateProfile(FileReplication ffr) {
+    return bitRateProfile;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Each pass modifies a fraction of the files.</p>
+   */
+  @Override
+  public void preBackup(FileReplication ffr) throws IOException, SQLException {
+    passes.incrementAndGet();
+  }
+
+  @Override
+  public void init(FileReplication ffr) throws IOException, SQLException {
+    // Do nothing
+  }
+
+  @Override
+  public void cleanup(FileReplication ffr) throws IOException, SQLException {
+    synchronized (entryCacheLock) {
+      lastEntry = null;
+    }
+  }
+
+  @Override
+  public void postBackup(FileReplication ffr) throws IOException, SQLException {
+    // Do nothing
+  }
+
+  @Override
+  public Set<String> getRequiredFilenames(FileReplication ffr) {
+    return Collections.emptySet();
+  }
+
+  @Override
+  public Iterator<String> getFilenameIterator(FileReplication ffr) {
+    return new TreeIterator();
+  }
+
+  @Override
+  public InetAddress getDefaultSourceIpAddress() {
+    return InetAddress.UNSPECIFIED_IPV4;
+  }
+
+  @Override
+  public List<Server.Name> getReplicatedMysqlServers(FileReplication ffr) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public List<String> getReplicatedMysqlMinorVersions(FileReplication ffr) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Random getFastRandom() {
+    return AoservConnector.getFastRandom();
+  }
+
+  @Override
+  public Logger getLogger() {
+    return logger;
+  }
+
+  @Override
+  public File getStateDirectory() {
+    return stateDirectory;
+  }
+
+  @Override
+  public String getServerPath(FileReplication ffr, String filename) {
+    return filename.replace(File.separatorChar, '/');
+  }
+}